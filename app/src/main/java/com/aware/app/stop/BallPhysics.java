@@ -0,0 +1,155 @@
+package com.aware.app.stop;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * Ball movement integrated with a fixed timestep.
+ * Sensor callbacks only update the filtered acceleration, the position is
+ * stepped from display frames at a constant rate, so ball speed and score
+ * do not depend on how fast (or how bursty) a device delivers sensor events.
+ * Acceleration and the drawn position cross threads as two floats packed into
+ * one atomic long, so a reader never sees x from one update and y from another.
+ */
+
+public class BallPhysics {
+
+    // 50 Hz, the accelerometer rate the original per-event integration was tuned for
+    public static final long STEP_NANOS = 20000000L;
+
+    // frames later than this are not caught up, the ball just continues from where it was
+    private static final long MAX_FRAME_NANOS = 250000000L;
+
+    // low-pass factor applied to each incoming acceleration sample
+    private static final float FILTER_ALPHA = 0.5f;
+
+    public interface StepListener {
+        // called once per physics step, timestamp in milliseconds
+        void onStep(long timestamp);
+    }
+
+    // filtered acceleration, written by the sensor thread only
+    private final AtomicLong acceleration = new AtomicLong(pack(0, 0));
+
+    // interpolated position to draw, written by the physics step only
+    private final AtomicLong renderPosition = new AtomicLong(pack(0, 0));
+
+    private float x, y, previousX, previousY;
+    private float xMax, yMax, sensitivity;
+    private long lastFrameNanos, accumulatorNanos;
+
+    // step clock, render thread only
+    private long simulatedNanos, startMillis;
+
+    // sets the play field and puts the ball to the center
+    public void reset(float xMax, float yMax, float sensitivity) {
+        this.xMax = xMax;
+        this.yMax = yMax;
+        this.sensitivity = sensitivity;
+        center();
+    }
+
+    public void center() {
+        x = previousX = xMax / 2;
+        y = previousY = yMax / 2;
+        acceleration.set(pack(0, 0));
+        lastFrameNanos = 0;
+        accumulatorNanos = 0;
+        renderPosition.set(pack(x, y));
+    }
+
+    // restarts the simulated clock, step timestamps count from now; render thread only,
+    // between two advance() calls
+    public void startClock() {
+        startMillis = System.currentTimeMillis();
+        simulatedNanos = 0;
+    }
+
+    // latest accelerometer values, called from the sensor thread
+    public void onAcceleration(float ax, float ay) {
+        long previous = acceleration.get();
+        float accelX = unpackX(previous);
+        float accelY = unpackY(previous);
+        accelX += FILTER_ALPHA * (ax - accelX);
+        accelY += FILTER_ALPHA * (ay - accelY);
+        acceleration.set(pack(accelX, accelY));
+    }
+
+    // runs all physics steps that fit into the time elapsed since the previous frame
+    public void advance(long frameTimeNanos, StepListener listener) {
+        if (lastFrameNanos == 0) {
+            lastFrameNanos = frameTimeNanos;
+            return;
+        }
+
+        long elapsed = Math.min(frameTimeNanos - lastFrameNanos, MAX_FRAME_NANOS);
+        lastFrameNanos = frameTimeNanos;
+        accumulatorNanos += elapsed;
+
+        while (accumulatorNanos >= STEP_NANOS) {
+            step();
+            accumulatorNanos -= STEP_NANOS;
+            simulatedNanos += STEP_NANOS;
+            if (listener != null) listener.onStep(startMillis + simulatedNanos / 1000000L);
+        }
+
+        // position between the last two steps, for drawing
+        float alpha = (float) accumulatorNanos / STEP_NANOS;
+        renderPosition.set(pack(previousX + (x - previousX) * alpha, previousY + (y - previousY) * alpha));
+    }
+
+    private void step() {
+        previousX = x;
+        previousY = y;
+
+        long accel = acceleration.get();
+        float xS = (unpackX(accel) * sensitivity / 2) * sensitivity;
+        float yS = (unpackY(accel) * sensitivity / 2) * sensitivity;
+
+        x = clamp(x - xS, xMax);
+        y = clamp(y - yS, yMax);
+    }
+
+    private static float clamp(float value, float max) {
+        //off screen movements
+        if (value > max) return max;
+        if (value < 0) return 0;
+        return value;
+    }
+
+    // latest position to draw, read it once per frame and unpack with unpackX()/unpackY()
+    public long getRenderPosition() {
+        return renderPosition.get();
+    }
+
+    public static long pack(float x, float y) {
+        return ((long) Float.floatToRawIntBits(x) << 32) | (Float.floatToRawIntBits(y) & 0xFFFFFFFFL);
+    }
+
+    public static float unpackX(long packed) {
+        return Float.intBitsToFloat((int) (packed >>> 32));
+    }
+
+    public static float unpackY(long packed) {
+        return Float.intBitsToFloat((int) packed);
+    }
+
+    // offset of the ball from the center
+    public float getChangeX() {
+        return x - xMax / 2;
+    }
+
+    public float getChangeY() {
+        return y - yMax / 2;
+    }
+
+    public double getDistance() {
+        float changeX = getChangeX();
+        float changeY = getChangeY();
+        return Math.sqrt(changeX * changeX + changeY * changeY);
+    }
+
+    // maximum possible distance ball can cover from center
+    public double getMaxDistance() {
+        return Math.sqrt((xMax / 2) * (xMax / 2) + (yMax / 2) * (yMax / 2));
+    }
+}
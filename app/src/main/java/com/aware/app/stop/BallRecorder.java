@@ -0,0 +1,107 @@
+package com.aware.app.stop;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+ * Preallocated column storage for the ball positions sampled during a game
+ */
+
+public class BallRecorder {
+
+    private long[] timestamps;
+    private float[] ballX;
+    private float[] ballY;
+    private double[] distances;
+    private int size;
+
+    // sized for the default 10 seconds game
+    public BallRecorder() {
+        this(SampleRecorder.capacityFor(10000));
+    }
+
+    public BallRecorder(int capacity) {
+        capacity = Math.max(capacity, 1);
+        timestamps = new long[capacity];
+        ballX = new float[capacity];
+        ballY = new float[capacity];
+        distances = new double[capacity];
+    }
+
+    // makes sure the buffers can hold the given number of samples without growing
+    public void ensureCapacity(int capacity) {
+        if (capacity > timestamps.length) {
+            grow(capacity);
+        }
+    }
+
+    public void record(long timestamp, float x, float y, double distance) {
+        if (size == timestamps.length) {
+            grow(size * 2);
+        }
+
+        timestamps[size] = timestamp;
+        ballX[size] = x;
+        ballY[size] = y;
+        distances[size] = distance;
+        size++;
+    }
+
+    // appends the samples [from, to) of another recorder
+    public void append(BallRecorder source, int from, int to) {
+        int count = to - from;
+        ensureCapacity(size + count);
+        System.arraycopy(source.timestamps, from, timestamps, size, count);
+        System.arraycopy(source.ballX, from, ballX, size, count);
+        System.arraycopy(source.ballY, from, ballY, size, count);
+        System.arraycopy(source.distances, from, distances, size, count);
+        size += count;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return timestamps.length;
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public float getBallX(int index) {
+        return ballX[index];
+    }
+
+    public float getBallY(int index) {
+        return ballY[index];
+    }
+
+    public double getDistance(int index) {
+        return distances[index];
+    }
+
+    // writes one JSON object per ball sample; floats are boxed so they keep their Float.toString() form
+    public void writeSample(JsonWriter writer, int index) throws IOException {
+        writer.beginObject();
+        writer.name("timestamp").value(timestamps[index]);
+        writer.name("ball_x").value(Float.valueOf(ballX[index]));
+        writer.name("ball_y").value(Float.valueOf(ballY[index]));
+        writer.name("distance").value(distances[index]);
+        writer.endObject();
+    }
+
+    private void grow(int capacity) {
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        ballX = Arrays.copyOf(ballX, capacity);
+        ballY = Arrays.copyOf(ballY, capacity);
+        distances = Arrays.copyOf(distances, capacity);
+    }
+}
@@ -0,0 +1,170 @@
+package com.aware.app.stop;
+
+import android.graphics.Canvas;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.view.Choreographer;
+import android.view.SurfaceHolder;
+
+import java.util.concurrent.CountDownLatch;
+
+/*
+ * Render loop of the ball game surface, running on its own thread.
+ * Every display frame steps the ball physics, but the surface is only locked and
+ * drawn when the ball position moved since the last drawn frame, so a still ball
+ * costs no drawing and the main thread does no game work at all.
+ */
+
+public class BallRenderer implements SurfaceHolder.Callback, Choreographer.FrameCallback {
+
+    // Draws one frame with the ball at the given position
+    public interface Scene {
+        void draw(Canvas canvas, float ballX, float ballY);
+    }
+
+    // Told about every display frame of the loop, drawn or not
+    public interface FrameListener {
+        void onFrame(long frameTimeNanos, boolean drawn);
+    }
+
+    private final BallPhysics physics;
+    private final BallPhysics.StepListener stepListener;
+    private final Scene scene;
+    private final FrameListener frameListener;
+
+    private HandlerThread thread;
+    private Handler handler;
+
+    // render thread state
+    private SurfaceHolder surface;
+    private long drawnPosition;
+    private boolean dirty;
+
+    public BallRenderer(BallPhysics physics, BallPhysics.StepListener stepListener, Scene scene,
+                        FrameListener frameListener) {
+        this.physics = physics;
+        this.stepListener = stepListener;
+        this.scene = scene;
+        this.frameListener = frameListener;
+    }
+
+    public void start() {
+        if (thread != null) return;
+
+        thread = new HandlerThread("stop-render", Process.THREAD_PRIORITY_DISPLAY);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    // returns once the render thread has drawn its last frame
+    public void stop() {
+        if (thread == null) return;
+
+        runAndWait(new Runnable() {
+            @Override
+            public void run() {
+                detach();
+            }
+        });
+        thread.quitSafely();
+        thread = null;
+        handler = null;
+    }
+
+    // runs the task on the render thread between two frames, false when the loop is not running
+    public boolean post(Runnable task) {
+        return handler != null && handler.post(task);
+    }
+
+    @Override
+    public void surfaceCreated(final SurfaceHolder holder) {
+        if (handler == null) return;
+
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                surface = holder;
+                dirty = true;
+                Choreographer.getInstance().postFrameCallback(BallRenderer.this);
+            }
+        });
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        if (handler == null) return;
+
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                dirty = true;
+            }
+        });
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        // the surface must not be touched once this returns
+        if (handler == null) return;
+
+        runAndWait(new Runnable() {
+            @Override
+            public void run() {
+                detach();
+            }
+        });
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (surface == null) return;
+
+        physics.advance(frameTimeNanos, stepListener);
+
+        long position = physics.getRenderPosition();
+        boolean drawn = false;
+        if (dirty || position != drawnPosition) {
+            Canvas canvas = surface.lockCanvas();
+            if (canvas != null) {
+                try {
+                    scene.draw(canvas, BallPhysics.unpackX(position), BallPhysics.unpackY(position));
+                } finally {
+                    surface.unlockCanvasAndPost(canvas);
+                }
+                drawnPosition = position;
+                dirty = false;
+                drawn = true;
+            }
+        }
+
+        if (frameListener != null) frameListener.onFrame(frameTimeNanos, drawn);
+
+        // next frame callback paces the loop to the display refresh rate
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    // render thread
+    private void detach() {
+        surface = null;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    private void runAndWait(final Runnable runnable) {
+        final CountDownLatch done = new CountDownLatch(1);
+        boolean posted = handler.post(new Runnable() {
+            @Override
+            public void run() {
+                runnable.run();
+                done.countDown();
+            }
+        });
+        if (!posted) return;
+
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
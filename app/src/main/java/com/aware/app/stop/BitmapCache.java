@@ -0,0 +1,72 @@
+package com.aware.app.stop;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.util.LruCache;
+
+/*
+ * Scaled game bitmaps kept across games, keyed by resource and size.
+ * Full-size sources are recycled right after scaling, and the two static
+ * circles are composited once into a single layer, so each frame draws one
+ * background bitmap plus the ball and "play again" decodes nothing.
+ */
+
+public final class BitmapCache {
+
+    // a few ball sizes worth of bitmaps, evicted entries are left to the GC as they may still be on screen
+    private static final int MAX_KILOBYTES = (int) (Runtime.getRuntime().maxMemory() / 1024 / 16);
+
+    private static final LruCache<String, Bitmap> cache = new LruCache<String, Bitmap>(MAX_KILOBYTES) {
+        @Override
+        protected int sizeOf(String key, Bitmap bitmap) {
+            return bitmap.getByteCount() / 1024;
+        }
+    };
+
+    private BitmapCache() {
+    }
+
+    // square bitmap of the resource scaled to the given size
+    public static Bitmap getScaled(Resources resources, int resId, int size) {
+        String key = resId + ":" + size;
+        Bitmap bitmap = cache.get(key);
+        if (bitmap == null) {
+            bitmap = decodeScaled(resources, resId, size);
+            cache.put(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    // both circles composited into one layer of the big circle's size, small one centered under the big one
+    public static Bitmap getCircles(Resources resources, int smallResId, int smallSize, int bigResId, int bigSize) {
+        String key = smallResId + ":" + smallSize + "+" + bigResId + ":" + bigSize;
+        Bitmap layer = cache.get(key);
+        if (layer == null) {
+            layer = Bitmap.createBitmap(bigSize, bigSize, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(layer);
+
+            // same drawing order as the game used before: small circle first, big circle over it
+            Bitmap small = decodeScaled(resources, smallResId, smallSize);
+            canvas.drawBitmap(small, (bigSize - smallSize) / 2f, (bigSize - smallSize) / 2f, null);
+            small.recycle();
+
+            Bitmap big = decodeScaled(resources, bigResId, bigSize);
+            canvas.drawBitmap(big, 0, 0, null);
+            big.recycle();
+
+            cache.put(key, layer);
+        }
+        return layer;
+    }
+
+    private static Bitmap decodeScaled(Resources resources, int resId, int size) {
+        Bitmap source = BitmapFactory.decodeResource(resources, resId);
+        Bitmap scaled = Bitmap.createScaledBitmap(source, size, size, true);
+        if (scaled != source) {
+            source.recycle();
+        }
+        return scaled;
+    }
+}
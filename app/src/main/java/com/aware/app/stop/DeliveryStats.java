@@ -0,0 +1,133 @@
+package com.aware.app.stop;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+ * Delivery quality of one sensor stream during a game: effective sample rate,
+ * longest gap between samples, a histogram of how far each gap is from the
+ * requested sampling period and, when the backend knows it, the latency from
+ * the sensor event to the callback. Updated per sample without allocating.
+ */
+
+public class DeliveryStats {
+
+    // requested sampling period of all streams, see SensorCapture.SAMPLING_PERIOD_US
+    public static final long EXPECTED_PERIOD_MILLIS = 20;
+
+    // upper bounds in milliseconds of the jitter buckets, |gap - expected period|; the last bucket is open
+    public static final int[] JITTER_BOUNDS = {1, 2, 5, 10, 20, 50, 100};
+
+    private final int[] jitter = new int[JITTER_BOUNDS.length + 1];
+    private int samples;
+    private long firstTimestamp;
+    private long lastTimestamp;
+    private long maxGap;
+    private int latencyCount;
+    private long latencySum;
+    private long latencyMax;
+
+    // timestamp in milliseconds, latency in nanoseconds or negative when the backend doesn't know it
+    public void onSample(long timestamp, long latencyNanos) {
+        if (samples == 0) {
+            firstTimestamp = timestamp;
+        } else {
+            long gap = timestamp - lastTimestamp;
+            if (gap > maxGap) maxGap = gap;
+
+            long deviation = Math.abs(gap - EXPECTED_PERIOD_MILLIS);
+            int bucket = 0;
+            while (bucket < JITTER_BOUNDS.length && deviation >= JITTER_BOUNDS[bucket]) bucket++;
+            jitter[bucket]++;
+        }
+        lastTimestamp = timestamp;
+        samples++;
+
+        if (latencyNanos >= 0) {
+            latencyCount++;
+            latencySum += latencyNanos;
+            if (latencyNanos > latencyMax) latencyMax = latencyNanos;
+        }
+    }
+
+    // restores decoded stats, see GameDataDecoder
+    public void set(int samples, long firstTimestamp, long lastTimestamp, long maxGap, int[] jitter,
+                    int latencyCount, long latencySum, long latencyMax) {
+        this.samples = samples;
+        this.firstTimestamp = firstTimestamp;
+        this.lastTimestamp = lastTimestamp;
+        this.maxGap = maxGap;
+        System.arraycopy(jitter, 0, this.jitter, 0, this.jitter.length);
+        this.latencyCount = latencyCount;
+        this.latencySum = latencySum;
+        this.latencyMax = latencyMax;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    // effective samples per second over the stream's own time span
+    public double getSampleRate() {
+        long span = lastTimestamp - firstTimestamp;
+        return span > 0 ? (samples - 1) * 1000.0 / span : 0;
+    }
+
+    public long getMaxGap() {
+        return maxGap;
+    }
+
+    public int[] getJitter() {
+        return jitter;
+    }
+
+    public int getLatencyCount() {
+        return latencyCount;
+    }
+
+    public long getLatencySum() {
+        return latencySum;
+    }
+
+    public long getLatencyMax() {
+        return latencyMax;
+    }
+
+    public void clear() {
+        Arrays.fill(jitter, 0);
+        samples = 0;
+        firstTimestamp = 0;
+        lastTimestamp = 0;
+        maxGap = 0;
+        latencyCount = 0;
+        latencySum = 0;
+        latencyMax = 0;
+    }
+
+    public void writeJson(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("samples").value(samples);
+        writer.name("sample_rate").value(Float.valueOf((float) getSampleRate()));
+        writer.name("max_gap").value(maxGap);
+        writer.name("jitter").beginArray();
+        for (int count : jitter) writer.value(count);
+        writer.endArray();
+
+        // latency in milliseconds, only known for the direct sensor backend
+        if (latencyCount > 0) {
+            writer.name("latency_mean").value(Float.valueOf(latencySum / (float) latencyCount / 1000000f));
+            writer.name("latency_max").value(Float.valueOf(latencyMax / 1000000f));
+        }
+        writer.endObject();
+    }
+}
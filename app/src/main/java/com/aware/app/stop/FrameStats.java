@@ -0,0 +1,81 @@
+package com.aware.app.stop;
+
+import java.util.Arrays;
+
+/*
+ * Frame timing of one game, fed by the render loop while sampling.
+ * Frame intervals go into a fixed histogram, so percentiles are computed at
+ * the end of the game without keeping or sorting every interval.
+ */
+
+public class FrameStats {
+
+    // 0.25 ms buckets up to 200 ms, longer intervals fall into the last bucket
+    private static final long BUCKET_NANOS = 250000L;
+    private static final int BUCKETS = 800;
+
+    // used when the display doesn't report its refresh rate
+    public static final long DEFAULT_REFRESH_PERIOD_NANOS = 16666667L;
+
+    private final int[] histogram = new int[BUCKETS];
+    private long refreshPeriodNanos = DEFAULT_REFRESH_PERIOD_NANOS;
+    private long lastFrameNanos;
+    private int intervals;
+    private int frames;
+    private int droppedFrames;
+
+    // sets the display refresh period, frames later than that count as dropped
+    public void setRefreshPeriod(long refreshPeriodNanos) {
+        if (refreshPeriodNanos > 0) {
+            this.refreshPeriodNanos = refreshPeriodNanos;
+        }
+    }
+
+    // one display frame of the render loop, drawn tells whether the surface was redrawn
+    public void onFrame(long frameTimeNanos, boolean drawn) {
+        if (drawn) frames++;
+
+        if (lastFrameNanos != 0) {
+            long interval = frameTimeNanos - lastFrameNanos;
+            histogram[(int) Math.min(interval / BUCKET_NANOS, BUCKETS - 1)]++;
+            intervals++;
+
+            // vsyncs that passed without a frame
+            long missed = (interval + refreshPeriodNanos / 2) / refreshPeriodNanos - 1;
+            if (missed > 0) droppedFrames += missed;
+        }
+        lastFrameNanos = frameTimeNanos;
+    }
+
+    // frames actually drawn while sampling
+    public int getFrames() {
+        return frames;
+    }
+
+    public int getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    // frame time in milliseconds below which the given fraction (0..1) of frames fall, upper bucket bound
+    public double getPercentile(double fraction) {
+        if (intervals == 0) return 0;
+
+        int rank = (int) Math.ceil(fraction * intervals);
+        int count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += histogram[i];
+            if (count >= rank) {
+                return (i + 1) * BUCKET_NANOS / 1000000.0;
+            }
+        }
+        return BUCKETS * BUCKET_NANOS / 1000000.0;
+    }
+
+    public void clear() {
+        Arrays.fill(histogram, 0);
+        lastFrameNanos = 0;
+        intervals = 0;
+        frames = 0;
+        droppedFrames = 0;
+    }
+}
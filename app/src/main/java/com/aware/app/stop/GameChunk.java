@@ -0,0 +1,56 @@
+package com.aware.app.stop;
+
+/*
+ * Bounded slice of one stream of a game, stored as a row of Provider.Game_Chunks
+ */
+
+public class GameChunk {
+
+    // samples per chunk, keeps each row far below the 2 MB CursorWindow limit
+    public static final int CHUNK_SAMPLES = 500;
+
+    public String gameId;
+    public String sensor; // JSON key of the stream, see GameDataWriter
+    public int sequence;
+
+    // ball samples when sensor is GameDataWriter.KEY_SAMPLES, sensor samples otherwise
+    public final BallRecorder ball = new BallRecorder(CHUNK_SAMPLES);
+    public final SampleRecorder samples = new SampleRecorder(CHUNK_SAMPLES);
+
+    private static final GameChunk[] pool = new GameChunk[16];
+    private static int poolSize;
+
+    public static GameChunk obtain(String gameId, String sensor, int sequence) {
+        GameChunk chunk = null;
+        synchronized (pool) {
+            if (poolSize > 0) {
+                chunk = pool[--poolSize];
+                pool[poolSize] = null;
+            }
+        }
+        if (chunk == null) {
+            chunk = new GameChunk();
+        }
+        chunk.gameId = gameId;
+        chunk.sensor = sensor;
+        chunk.sequence = sequence;
+        return chunk;
+    }
+
+    public boolean isBall() {
+        return GameDataWriter.KEY_SAMPLES.equals(sensor);
+    }
+
+    // returns a stored chunk to the pool
+    public void recycle() {
+        gameId = null;
+        sensor = null;
+        ball.clear();
+        samples.clear();
+        synchronized (pool) {
+            if (poolSize < pool.length) {
+                pool[poolSize++] = this;
+            }
+        }
+    }
+}
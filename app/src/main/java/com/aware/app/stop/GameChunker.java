@@ -0,0 +1,99 @@
+package com.aware.app.stop;
+
+/*
+ * Cuts the streams of a running game into GameChunks while samples are being recorded,
+ * so long games are stored as many bounded rows instead of one huge one.
+ * Each stream is only advanced from the thread recording it.
+ */
+
+public class GameChunker {
+
+    // Receives completed chunks, e.g. to store them in the background
+    public interface ChunkSink {
+        void onChunk(GameChunk chunk);
+    }
+
+    public static final int STREAM_BALL = 0;
+    public static final int STREAM_ACCELEROMETER = 1;
+    public static final int STREAM_LINEAR_ACCELEROMETER = 2;
+    public static final int STREAM_GYROSCOPE = 3;
+    public static final int STREAM_ROTATION = 4;
+
+    private static final String[] STREAM_NAMES = {
+            GameDataWriter.KEY_SAMPLES, GameDataWriter.KEY_ACCELEROMETER, GameDataWriter.KEY_LINEAR_ACCELEROMETER,
+            GameDataWriter.KEY_GYROSCOPE, GameDataWriter.KEY_ROTATION
+    };
+
+    private final ChunkSink sink;
+    private final int[] flushed = new int[STREAM_NAMES.length];
+    private final int[] sequence = new int[STREAM_NAMES.length];
+    private volatile String gameId;
+
+    public GameChunker(ChunkSink sink) {
+        this.sink = sink;
+    }
+
+    // starts chunking a new game, a null id disables chunking
+    public void start(String gameId) {
+        for (int i = 0; i < STREAM_NAMES.length; i++) {
+            flushed[i] = 0;
+            sequence[i] = 0;
+        }
+        this.gameId = gameId;
+    }
+
+    public boolean isActive() {
+        return gameId != null;
+    }
+
+    // called after each recorded ball sample, emits a chunk once enough samples are collected
+    public void onBallSample(BallRecorder ball) {
+        if (gameId != null && ball.size() - flushed[STREAM_BALL] >= GameChunk.CHUNK_SAMPLES) {
+            flushBall(ball);
+        }
+    }
+
+    // called after each recorded sensor sample, emits a chunk once enough samples are collected
+    public void onSample(int stream, SampleRecorder recorder) {
+        if (gameId != null && recorder.size() - flushed[stream] >= GameChunk.CHUNK_SAMPLES) {
+            flushSamples(stream, recorder);
+        }
+    }
+
+    // emits the remaining samples of all streams once recording has stopped
+    public void finish(GameSession session) {
+        if (gameId == null) return;
+
+        if (session.ball.size() > flushed[STREAM_BALL]) flushBall(session.ball);
+        flushRemaining(STREAM_ACCELEROMETER, session.accelerometer);
+        flushRemaining(STREAM_LINEAR_ACCELEROMETER, session.linearAccelerometer);
+        flushRemaining(STREAM_GYROSCOPE, session.gyroscope);
+        flushRemaining(STREAM_ROTATION, session.rotation);
+        gameId = null;
+    }
+
+    // stops chunking an aborted game without emitting the rest, returns its id (null when not chunked)
+    public String cancel() {
+        String aborted = gameId;
+        gameId = null;
+        return aborted;
+    }
+
+    private void flushRemaining(int stream, SampleRecorder recorder) {
+        if (recorder.size() > flushed[stream]) flushSamples(stream, recorder);
+    }
+
+    private void flushBall(BallRecorder ball) {
+        GameChunk chunk = GameChunk.obtain(gameId, STREAM_NAMES[STREAM_BALL], sequence[STREAM_BALL]++);
+        chunk.ball.append(ball, flushed[STREAM_BALL], ball.size());
+        flushed[STREAM_BALL] = ball.size();
+        sink.onChunk(chunk);
+    }
+
+    private void flushSamples(int stream, SampleRecorder recorder) {
+        GameChunk chunk = GameChunk.obtain(gameId, STREAM_NAMES[stream], sequence[stream]++);
+        chunk.samples.append(recorder, flushed[stream], recorder.size());
+        flushed[stream] = recorder.size();
+        sink.onChunk(chunk);
+    }
+}
@@ -0,0 +1,146 @@
+package com.aware.app.stop;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+/*
+ * Decodes the binary game format written by GameDataEncoder. Plain Java only, so the same
+ * class can be used on the server to turn stored rows back into the JSON document shape.
+ */
+
+public class GameDataDecoder {
+
+    public static GameSession decode(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+        if (in.readInt() != GameDataEncoder.MAGIC) {
+            throw new IOException("Not a STOP game data record");
+        }
+        int version = in.readUnsignedByte();
+        if (version != GameDataEncoder.FORMAT_VERSION) {
+            throw new IOException("Unsupported game data format version " + version);
+        }
+
+        GameSession session = new GameSession();
+        session.ballRadius = in.readInt();
+        session.sensitivity = in.readFloat();
+        session.deviceXres = in.readInt();
+        session.deviceYres = in.readInt();
+        session.score = in.readDouble();
+
+        readBall(in, session.ball);
+        readSamples(in, session.accelerometer);
+        readSamples(in, session.linearAccelerometer);
+        readSamples(in, session.gyroscope);
+        readSamples(in, session.rotation);
+
+        readFeatures(in, session.accelerometerTremor);
+        readFeatures(in, session.gyroscopeTremor);
+
+        readDelivery(in, session.accelerometerDelivery);
+        readDelivery(in, session.linearAccelerometerDelivery);
+        readDelivery(in, session.gyroscopeDelivery);
+        readDelivery(in, session.rotationDelivery);
+        return session;
+    }
+
+    // binary record to the JSON document of format version 5, which keeps the features and delivery stats
+    public static String toJson(byte[] data) throws IOException {
+        return new GameDataWriter().write(decode(data), true, true);
+    }
+
+    private static void readBall(DataInputStream in, BallRecorder ball) throws IOException {
+        int size = (int) readVarint(in);
+        ball.ensureCapacity(size);
+
+        long[] timestamps = readTimestamps(in, size);
+        float[] x = readFloats(in, size);
+        float[] y = readFloats(in, size);
+        float[] distance = readFloats(in, size);
+        for (int i = 0; i < size; i++) {
+            ball.record(timestamps[i], x[i], y[i], distance[i]);
+        }
+    }
+
+    private static void readSamples(DataInputStream in, SampleRecorder recorder) throws IOException {
+        int size = (int) readVarint(in);
+        if (size == 0) return;
+        recorder.ensureCapacity(size);
+
+        String deviceId = readString(in);
+        String label = readString(in);
+        long[] timestamps = readTimestamps(in, size);
+        int[] accuracies = new int[size];
+        for (int i = 0; i < size; i++) {
+            accuracies[i] = (int) unzigzag(readVarint(in));
+        }
+        float[] values0 = readFloats(in, size);
+        float[] values1 = readFloats(in, size);
+        float[] values2 = readFloats(in, size);
+        for (int i = 0; i < size; i++) {
+            recorder.record(timestamps[i], deviceId, values0[i], values1[i], values2[i], accuracies[i], label);
+        }
+    }
+
+    private static void readFeatures(DataInputStream in, TremorFeatures features) throws IOException {
+        int size = (int) readVarint(in);
+        features.ensureCapacity(size);
+
+        long start = 0;
+        for (int i = 0; i < size; i++) {
+            start += unzigzag(readVarint(in));
+            long end = start + unzigzag(readVarint(in));
+            features.addWindow(start, end, in.readFloat(), in.readFloat(), in.readFloat(),
+                    in.readFloat(), in.readFloat());
+        }
+    }
+
+    private static void readDelivery(DataInputStream in, DeliveryStats stats) throws IOException {
+        int samples = (int) readVarint(in);
+        long first = readVarint(in);
+        long last = first + readVarint(in);
+        long maxGap = readVarint(in);
+        int[] jitter = new int[DeliveryStats.JITTER_BOUNDS.length + 1];
+        for (int i = 0; i < jitter.length; i++) {
+            jitter[i] = (int) readVarint(in);
+        }
+        stats.set(samples, first, last, maxGap, jitter, (int) readVarint(in), readVarint(in), readVarint(in));
+    }
+
+    private static long[] readTimestamps(DataInputStream in, int size) throws IOException {
+        long[] timestamps = new long[size];
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            previous += unzigzag(readVarint(in));
+            timestamps[i] = previous;
+        }
+        return timestamps;
+    }
+
+    private static float[] readFloats(DataInputStream in, int size) throws IOException {
+        float[] values = new float[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = in.readFloat();
+        }
+        return values;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,159 @@
+package com.aware.app.stop;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/*
+ * Compact binary encoding of a finished game session (storage format version 2).
+ *
+ * Layout, big-endian:
+ *   int magic "STOP", byte format version
+ *   header: int ball radius, float sensitivity, int x resolution, int y resolution, double score
+ *   ball stream: varint count, delta-encoded timestamps, float32 ball_x, ball_y, distance columns
+ *   accelerometer, linear accelerometer, gyroscope and rotation streams, each:
+ *     varint count, device_id, label, delta-encoded timestamps, varint accuracy column,
+ *     float32 double_values_0, double_values_1, double_values_2 columns
+ *
+ *   tremor features of the accelerometer and gyroscope, each: varint count, then per window
+ *     delta-encoded start and end timestamps, float32 sample rate, rms, band power, band ratio
+ *     and dominant frequency
+ *
+ *   delivery stats of the accelerometer, linear accelerometer, gyroscope and rotation, each:
+ *     varint samples, first timestamp, span, max gap, jitter bucket counts, latency count,
+ *     latency sum and latency max in nanoseconds
+ *
+ * Timestamps are zigzag varints of the difference to the previous sample (the first one to 0).
+ * device_id and label do not change during a game, so they are stored once per stream.
+ * GameDataDecoder turns the bytes back into the JSON document of format version 5.
+ */
+
+public class GameDataEncoder {
+
+    // "STOP" in ASCII
+    public static final int MAGIC = 0x53544F50;
+
+    // layout version, raised on every change of the layout above; GameDataDecoder rejects the others
+    public static final int FORMAT_VERSION = 2;
+
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(16 * 1024);
+
+    public byte[] encode(GameSession session) {
+        buffer.reset();
+        DataOutputStream out = new DataOutputStream(buffer);
+
+        try {
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+
+            // game settings and score
+            out.writeInt(session.ballRadius);
+            out.writeFloat(session.sensitivity);
+            out.writeInt(session.deviceXres);
+            out.writeInt(session.deviceYres);
+            out.writeDouble(session.score);
+
+            writeBall(out, session.ball);
+            writeSamples(out, session.accelerometer);
+            writeSamples(out, session.linearAccelerometer);
+            writeSamples(out, session.gyroscope);
+            writeSamples(out, session.rotation);
+            writeFeatures(out, session.accelerometerTremor);
+            writeFeatures(out, session.gyroscopeTremor);
+            writeDelivery(out, session.accelerometerDelivery);
+            writeDelivery(out, session.linearAccelerometerDelivery);
+            writeDelivery(out, session.gyroscopeDelivery);
+            writeDelivery(out, session.rotationDelivery);
+            out.flush();
+        } catch (IOException e) {
+            // ByteArrayOutputStream never throws
+            throw new IllegalStateException(e);
+        }
+
+        return buffer.toByteArray();
+    }
+
+    private static void writeBall(DataOutputStream out, BallRecorder ball) throws IOException {
+        int size = ball.size();
+        writeVarint(out, size);
+
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            long timestamp = ball.getTimestamp(i);
+            writeVarint(out, zigzag(timestamp - previous));
+            previous = timestamp;
+        }
+        for (int i = 0; i < size; i++) out.writeFloat(ball.getBallX(i));
+        for (int i = 0; i < size; i++) out.writeFloat(ball.getBallY(i));
+        for (int i = 0; i < size; i++) out.writeFloat((float) ball.getDistance(i));
+    }
+
+    private static void writeSamples(DataOutputStream out, SampleRecorder recorder) throws IOException {
+        int size = recorder.size();
+        writeVarint(out, size);
+        if (size == 0) return;
+
+        writeString(out, recorder.getDeviceId(0));
+        writeString(out, recorder.getLabel(0));
+
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            long timestamp = recorder.getTimestamp(i);
+            writeVarint(out, zigzag(timestamp - previous));
+            previous = timestamp;
+        }
+        for (int i = 0; i < size; i++) writeVarint(out, zigzag(recorder.getAccuracy(i)));
+        for (int i = 0; i < size; i++) out.writeFloat((float) recorder.getValue0(i));
+        for (int i = 0; i < size; i++) out.writeFloat((float) recorder.getValue1(i));
+        for (int i = 0; i < size; i++) out.writeFloat((float) recorder.getValue2(i));
+    }
+
+    private static void writeFeatures(DataOutputStream out, TremorFeatures features) throws IOException {
+        int size = features.size();
+        writeVarint(out, size);
+
+        long previous = 0;
+        for (int i = 0; i < size; i++) {
+            writeVarint(out, zigzag(features.getStartTimestamp(i) - previous));
+            writeVarint(out, zigzag(features.getEndTimestamp(i) - features.getStartTimestamp(i)));
+            previous = features.getStartTimestamp(i);
+            out.writeFloat(features.getSampleRate(i));
+            out.writeFloat(features.getRms(i));
+            out.writeFloat(features.getBandPower(i));
+            out.writeFloat(features.getBandRatio(i));
+            out.writeFloat(features.getDominantFrequency(i));
+        }
+    }
+
+    // null is stored as a false presence flag
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    private static void writeDelivery(DataOutputStream out, DeliveryStats stats) throws IOException {
+        writeVarint(out, stats.getSamples());
+        writeVarint(out, stats.getFirstTimestamp());
+        writeVarint(out, stats.getLastTimestamp() - stats.getFirstTimestamp());
+        writeVarint(out, stats.getMaxGap());
+        for (int count : stats.getJitter()) {
+            writeVarint(out, count);
+        }
+        writeVarint(out, stats.getLatencyCount());
+        writeVarint(out, stats.getLatencySum());
+        writeVarint(out, stats.getLatencyMax());
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    // unsigned LEB128, 7 bits per byte
+    static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
@@ -0,0 +1,160 @@
+package com.aware.app.stop;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+
+/*
+ * Streams a finished game session into the JSON document stored in Provider.Game_Data.DATA.
+ * The character buffer is reused between games, so only the final String is allocated.
+ */
+
+public class GameDataWriter {
+
+    public static final String KEY_GAMEDATA = "gamedata";
+    public static final String KEY_BALL_RADIUS = "ball_radius";
+    public static final String KEY_SENSITIVITY = "sensitivity";
+    public static final String KEY_DEVICE_X_RES = "device_x_res";
+    public static final String KEY_DEVICE_Y_RES = "device_y_res";
+    public static final String KEY_SAMPLES = "samples";
+    public static final String KEY_SCORE = "score";
+    public static final String KEY_FEATURES = "features";
+    public static final String KEY_DELIVERY = "delivery";
+    public static final String KEY_ACCELEROMETER = "accelerometer";
+    public static final String KEY_LINEAR_ACCELEROMETER = "linearaccelerometer";
+    public static final String KEY_GYROSCOPE = "gyroscope";
+    public static final String KEY_ROTATION = "rotation";
+
+    // placeholder stored instead of the samples when a sensor did not deliver any data
+    public static final String NOT_ACTIVATED = "not_activated";
+
+    private final CharArrayWriter buffer = new CharArrayWriter(64 * 1024);
+
+    // format 1 document, byte-identical to the one the game originally assembled from strings
+    public String write(GameSession session) {
+        return write(session, true, false);
+    }
+
+    /**
+     * Writes the game document. Without samples all sample arrays are left empty,
+     * which is the Game_Data row of a game whose samples are stored as chunks.
+     * With stats the gamedata header also holds the tremor features and the sensor
+     * delivery stats, which format 1 does not have.
+     */
+    public String write(GameSession session, boolean withSamples, boolean withStats) {
+        buffer.reset();
+
+        try {
+            JsonWriter writer = newJsonWriter();
+            writer.beginObject();
+
+            // game settings, ball samples and score
+            writer.name(KEY_GAMEDATA).beginArray().beginObject();
+            writeHeader(writer, session);
+            writer.name(KEY_SAMPLES);
+            writeBall(writer, withSamples ? session.ball : null);
+            writer.name(KEY_SCORE).value(session.score);
+            if (withStats) writeStats(writer, session);
+            writer.endObject().endArray();
+
+            // sensors data
+            writer.name(KEY_ACCELEROMETER);
+            writeSamples(writer, withSamples ? session.accelerometer : null);
+            writer.name(KEY_LINEAR_ACCELEROMETER);
+            writeSamples(writer, withSamples ? session.linearAccelerometer : null);
+            writer.name(KEY_GYROSCOPE);
+            writeSamples(writer, withSamples ? session.gyroscope : null);
+            writer.name(KEY_ROTATION);
+            writeSamples(writer, withSamples ? session.rotation : null);
+
+            writer.endObject();
+            writer.flush();
+        } catch (IOException e) {
+            // CharArrayWriter never throws
+            throw new IllegalStateException(e);
+        }
+
+        return buffer.toString();
+    }
+
+    // JSON array with the samples of one chunk, stored in Provider.Game_Chunks.DATA
+    public String writeChunk(GameChunk chunk) {
+        buffer.reset();
+
+        try {
+            JsonWriter writer = newJsonWriter();
+            if (chunk.isBall()) {
+                writeBall(writer, chunk.ball);
+            } else {
+                writeSamples(writer, chunk.samples);
+            }
+            writer.flush();
+        } catch (IOException e) {
+            // CharArrayWriter never throws
+            throw new IllegalStateException(e);
+        }
+
+        return buffer.toString();
+    }
+
+    private JsonWriter newJsonWriter() {
+        JsonWriter writer = new JsonWriter(buffer);
+        // same settings Gson uses by default; lenient keeps NaN scores of empty games writable
+        writer.setHtmlSafe(true);
+        writer.setSerializeNulls(false);
+        writer.setLenient(true);
+        return writer;
+    }
+
+    private void writeHeader(JsonWriter writer, GameSession session) throws IOException {
+        writer.name(KEY_BALL_RADIUS).value(session.ballRadius);
+        writer.name(KEY_SENSITIVITY).value(Float.valueOf(session.sensitivity));
+        writer.name(KEY_DEVICE_X_RES).value(session.deviceXres);
+        writer.name(KEY_DEVICE_Y_RES).value(session.deviceYres);
+    }
+
+    // tremor features and delivery stats objects of the gamedata header
+    private void writeStats(JsonWriter writer, GameSession session) throws IOException {
+        writer.name(KEY_FEATURES).beginObject();
+        writer.name(KEY_ACCELEROMETER);
+        session.accelerometerTremor.writeJson(writer);
+        writer.name(KEY_GYROSCOPE);
+        session.gyroscopeTremor.writeJson(writer);
+        writer.endObject();
+        writer.name(KEY_DELIVERY).beginObject();
+        writer.name(KEY_ACCELEROMETER);
+        session.accelerometerDelivery.writeJson(writer);
+        writer.name(KEY_LINEAR_ACCELEROMETER);
+        session.linearAccelerometerDelivery.writeJson(writer);
+        writer.name(KEY_GYROSCOPE);
+        session.gyroscopeDelivery.writeJson(writer);
+        writer.name(KEY_ROTATION);
+        session.rotationDelivery.writeJson(writer);
+        writer.endObject();
+    }
+
+    private void writeBall(JsonWriter writer, BallRecorder ball) throws IOException {
+        writer.beginArray();
+        if (ball != null) {
+            for (int i = 0; i < ball.size(); i++) {
+                ball.writeSample(writer, i);
+            }
+        }
+        writer.endArray();
+    }
+
+    // null recorder writes an empty array, an empty recorder the not_activated placeholder
+    private void writeSamples(JsonWriter writer, SampleRecorder recorder) throws IOException {
+        writer.beginArray();
+        if (recorder != null) {
+            if (recorder.size() == 0) {
+                writer.value(NOT_ACTIVATED);
+            }
+            for (int i = 0; i < recorder.size(); i++) {
+                recorder.writeSample(writer, i);
+            }
+        }
+        writer.endArray();
+    }
+}
@@ -4,9 +4,12 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PixelFormat;
 import android.graphics.Point;
+import android.graphics.PorterDuff;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.CountDownTimer;
 import android.preference.PreferenceManager;
@@ -15,8 +18,10 @@ import androidx.fragment.app.FragmentTransaction;
 
 import android.view.Display;
 import android.view.LayoutInflater;
+import android.view.SurfaceView;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.Button;
 import android.widget.FrameLayout;
 import android.widget.ImageButton;
@@ -31,7 +36,8 @@ import com.aware.LinearAccelerometer;
 import com.aware.Rotation;
 import com.aware.app.stop.database.Provider;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
-import com.google.gson.Gson;
+
+import java.util.UUID;
 
 import static android.content.Context.MODE_PRIVATE;
 
@@ -49,20 +55,23 @@ public class GameFragment extends Fragment {
     private LinearAccelerometer.AWARESensorObserver observerLinearAccelerometer;
     private Gyroscope.AWARESensorObserver observerGyroscope;
     private Rotation.AWARESensorObserver observerRotation;
+    private SensorCapture sensorCapture;
+    private boolean directCapture;
+    private String deviceId;
 
     // Timer component
     private static volatile CountDownTimer countDownTimer;
 
     // ball game variables
-    private float ballXpos, ballXmax, ballXaccel, ballXvel = 0.0f;
-    private float ballYpos, ballYmax, ballYaccel, ballYvel = 0.0f;
+    private final BallPhysics ballPhysics = new BallPhysics();
+    private BallRenderer ballRenderer;
+    private float ballXmax, ballYmax;
     private float bigCircleXpos, bigCircleYpos;
-    private float smallCircleXpos, smallCircleYpos;
     private double ballMaxDistance, scoreRaw;
     private int deviceXres, deviceYres, scoreCounter;
+    private long refreshPeriodNanos;
     private Bitmap ball;
-    private Bitmap circleBig;
-    private Bitmap circleSmall;
+    private Bitmap circles;
     private String lastScore;
 
     // Ball game settings variables
@@ -71,16 +80,16 @@ public class GameFragment extends Fragment {
     private int bigCircleSize;
     private float sensitivity; // 3.0 is default
     private int gameTime; // in milliseconds
+    private int gameDataFormat; // Provider.Game_Data.FORMAT_*
 
-    // sampling flag
-    static boolean sampling;
+    // sampling barrier, recorders on the sensor threads enter it for every sample
+    private final SamplingGate samplingGate = new SamplingGate();
 
-    // Strings for storing sampling data in JSON format
-    private String gameData;
-    private StringBuffer accelSamples = new StringBuffer();
-    private StringBuffer linaccelSamples = new StringBuffer();
-    private StringBuffer gyroSamples = new StringBuffer();
-    private StringBuffer rotationSamples = new StringBuffer();
+    // Preallocated buffers for game and sensor samples, serialized once the game is over
+    private GameSession session = GameSession.obtain();
+    private GamePersister gamePersister;
+    private GameChunker gameChunker;
+    private final SessionProfiler sessionProfiler = new SessionProfiler();
 
     private static final String SAMPLE_KEY_TIMESTAMP = "timestamp";
     private static final String SAMPLE_KEY_DEVICE_ID = "device_id";
@@ -100,6 +109,13 @@ public class GameFragment extends Fragment {
         // Inflate the layout for this fragment
         View view = inflater.inflate(R.layout.fragment_game, container, false);
 
+        // background writer for finished games
+        gamePersister = new GamePersister(getContext());
+        gameChunker = new GameChunker(gamePersister);
+
+        // ball is stepped and drawn on its own render thread
+        ballRenderer = new BallRenderer(ballPhysics, stepListener, ballScene, frameListener);
+
         // Initializing views
         timer = view.findViewById(R.id.timer);
         containerLayout = view.findViewById(R.id.container);
@@ -146,75 +162,52 @@ public class GameFragment extends Fragment {
         observerAccelerometer = new Accelerometer.AWARESensorObserver() {
             @Override
             public void onAccelerometerChanged(ContentValues data) {
-                ballXaccel = data.getAsFloat(SAMPLE_KEY_DOUBLE_VALUES_0);
-                ballYaccel = -data.getAsFloat(SAMPLE_KEY_DOUBLE_VALUES_1);
-                updateBall(data.getAsLong(SAMPLE_KEY_TIMESTAMP));
-
-                if (sampling) {
-                    Sample accelSample = new Sample(data.getAsLong(SAMPLE_KEY_TIMESTAMP),
-                            data.getAsString(SAMPLE_KEY_DEVICE_ID),
-                            data.getAsDouble(SAMPLE_KEY_DOUBLE_VALUES_0),
-                            data.getAsDouble(SAMPLE_KEY_DOUBLE_VALUES_1),
-                            data.getAsDouble(SAMPLE_KEY_DOUBLE_VALUES_2),
-                            data.getAsInteger(SAMPLE_KEY_ACCURACY),
-                            data.getAsString(SAMPLE_KEY_LABEL));
-
-                    accelSamples.append(new Gson().toJson(accelSample)).append(",");
-                }
+                onAwareSample(GameChunker.STREAM_ACCELEROMETER, data);
             }
         };
 
         observerLinearAccelerometer = new LinearAccelerometer.AWARESensorObserver() {
             @Override
             public void onLinearAccelChanged(ContentValues data) {
-                if (sampling) {
-                    Sample linaccelSample = new Sample(data.getAsLong(SAMPLE_KEY_TIMESTAMP),
-                            data.getAsString(SAMPLE_KEY_DEVICE_ID),
-                            data.getAsDouble(SAMPLE_KEY_DOUBLE_VALUES_0),
-                            data.getAsDouble(SAMPLE_KEY_DOUBLE_VALUES_1),
-                            data.getAsDouble(SAMPLE_KEY_DOUBLE_VALUES_2),
-                            data.getAsInteger(SAMPLE_KEY_ACCURACY),
-                            data.getAsString(SAMPLE_KEY_LABEL));
-
-                    linaccelSamples.append(new Gson().toJson(linaccelSample)).append(",");
-                }
+                onAwareSample(GameChunker.STREAM_LINEAR_ACCELEROMETER, data);
             }
         };
 
         observerGyroscope = new Gyroscope.AWARESensorObserver() {
             @Override
             public void onGyroscopeChanged(ContentValues data) {
-                if (sampling) {
-                    Sample gyroSample = new Sample(data.getAsLong(SAMPLE_KEY_TIMESTAMP),
-                            data.getAsString(SAMPLE_KEY_DEVICE_ID),
-                            data.getAsDouble(SAMPLE_KEY_DOUBLE_VALUES_0),
-                            data.getAsDouble(SAMPLE_KEY_DOUBLE_VALUES_1),
-                            data.getAsDouble(SAMPLE_KEY_DOUBLE_VALUES_2),
-                            data.getAsInteger(SAMPLE_KEY_ACCURACY),
-                            data.getAsString(SAMPLE_KEY_LABEL));
-
-                    gyroSamples.append(new Gson().toJson(gyroSample)).append(",");
-                }
+                onAwareSample(GameChunker.STREAM_GYROSCOPE, data);
             }
         };
 
         observerRotation = new Rotation.AWARESensorObserver() {
             @Override
             public void onRotationChanged(ContentValues data) {
-                if (sampling) {
-                    Sample rotationSample = new Sample(data.getAsLong(SAMPLE_KEY_TIMESTAMP),
-                            data.getAsString(SAMPLE_KEY_DEVICE_ID),
-                            data.getAsDouble(SAMPLE_KEY_DOUBLE_VALUES_0),
-                            data.getAsDouble(SAMPLE_KEY_DOUBLE_VALUES_1),
-                            data.getAsDouble(SAMPLE_KEY_DOUBLE_VALUES_2),
-                            data.getAsInteger(SAMPLE_KEY_ACCURACY),
-                            data.getAsString(SAMPLE_KEY_LABEL));
-
-                    rotationSamples.append(new Gson().toJson(rotationSample)).append(",");
-                }
+                onAwareSample(GameChunker.STREAM_ROTATION, data);
             }
         };
 
+        // Direct SensorManager backend, used instead of the observers when selected in settings
+        sensorCapture = new SensorCapture(getContext(), new SensorCapture.Listener() {
+            @Override
+            public void onSensorSample(int stream, long timestamp, float value0, float value1, float value2, int accuracy,
+                                       long latencyNanos) {
+                GameFragment.this.onSensorSample(stream, timestamp, deviceId, value0, value1, value2, accuracy, "",
+                        latencyNanos);
+            }
+        });
+
+        // first game frame, usually drawn with the first frame of MainActivity
+        final View content = view;
+        content.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                content.getViewTreeObserver().removeOnPreDrawListener(this);
+                StartupTrace.mark(StartupTrace.GAME_FIRST_FRAME);
+                return true;
+            }
+        });
+
         return view;
     }
 
@@ -229,6 +222,12 @@ public class GameFragment extends Fragment {
         bigCircleSize = ballSize*5;
         sensitivity = Float.parseFloat(sPref.getString(getString(R.string.key_sensitivity), String.valueOf(R.string.key_sensitivity_value)));
         gameTime = Integer.parseInt(sPref.getString(getString(R.string.key_game_time), String.valueOf(R.string.key_game_time_value)))*1000;
+        gameDataFormat = Integer.parseInt(sPref.getString(getString(R.string.key_game_data_format), getString(R.string.key_game_data_format_value)));
+        directCapture = getString(R.string.sensor_backend_direct).equals(sPref.getString(getString(R.string.key_sensor_backend), getString(R.string.key_sensor_backend_value)))
+                && sensorCapture.isAvailable();
+
+        // sizing sample buffers for the game length, so recording never allocates
+        session.ensureCapacity(gameTime);
 
         // detection of the display size
         Point size = new Point();
@@ -236,31 +235,32 @@ public class GameFragment extends Fragment {
         display.getSize(size);
         deviceXres = size.x;
         deviceYres = size.y;
+        refreshPeriodNanos = display.getRefreshRate() > 0
+                ? (long) (1000000000L / display.getRefreshRate()) : FrameStats.DEFAULT_REFRESH_PERIOD_NANOS;
 
         // setting up the maximum allowed X and Y values
         ballXmax = (float) size.x - ballSize;
         ballYmax = (float) size.y - ballSize - 235 - 175; // toolbar = 235, bottom nav bar = 175
 
         // put ball to the center
-        ballXpos = ballXmax /2;
-        ballYpos = ballYmax /2;
+        ballPhysics.reset(ballXmax, ballYmax, sensitivity);
 
         // count maximum possible distance ball can cover from center
-        ballMaxDistance = Math.sqrt(ballXpos*ballXpos + ballYpos*ballYpos);
+        ballMaxDistance = ballPhysics.getMaxDistance();
 
         // put circles to the center
-        smallCircleXpos = (size.x - smallCircleSize)/2;
-        smallCircleYpos = (size.y - smallCircleSize - 235 - 175)/2;
         bigCircleXpos = (size.x - bigCircleSize)/2;
         bigCircleYpos = (size.y - bigCircleSize - 235 -175)/2;
 
         // sampling to false to prevent unnecessary data recording
-        sampling = false;
+        samplingGate.close();
 
         // Initializing timer
         countDownTimer = new CountDownTimer(gameTime + 5000, 1000) {
             @Override
             public void onTick(long millisUntilFinished) {
+                sessionProfiler.sampleHeap();
+
                 // updating UI according to timeframes and handling sensors
                 if ((millisUntilFinished >= gameTime + 1000) && (millisUntilFinished <= gameTime + 4000)) {
                     String counter = String.valueOf((millisUntilFinished/1000 - gameTime/1000)) + "...";
@@ -269,7 +269,9 @@ public class GameFragment extends Fragment {
 
                 if ((millisUntilFinished >= gameTime) && (millisUntilFinished < gameTime + 1000)) {
                     timer.setText(R.string.game_start);
-                    sampling = true;
+                    if (!samplingGate.isOpen()) {
+                        ballRenderer.post(startSampling);
+                    }
                 }
 
                 if ((millisUntilFinished >= 0) && (millisUntilFinished < gameTime)) {
@@ -280,7 +282,7 @@ public class GameFragment extends Fragment {
 
             @Override
             public void onFinish() {
-                sampling = false;
+                samplingGate.close();
                 if (getContext() != null) {
                     stopGame();
                 }
@@ -293,6 +295,7 @@ public class GameFragment extends Fragment {
         super.onStop();
 
         // reset UI to the initial state
+        ballRenderer.stop();
         containerLayout.removeAllViews();
         ballView = null;
         playBtn.setVisibility(View.VISIBLE);
@@ -304,28 +307,17 @@ public class GameFragment extends Fragment {
         timer.setText(R.string.game_press_button_to_play);
 
         // sampling to false to prevent unnecessary data recording
-        sampling = false;
+        samplingGate.close();
+
+        // a game aborted while running is not stored, neither are the chunks it already wrote
+        String abortedGameId = gameChunker.cancel();
+        if (abortedGameId != null) gamePersister.discardChunks(abortedGameId);
 
         // cancelling timer
         if (countDownTimer != null) countDownTimer.cancel();
 
         // stopping sensors
-        Accelerometer.setSensorObserver(null);
-        Aware.stopAccelerometer(getContext());
-        Aware.setSetting(getContext(), Aware_Preferences.STATUS_ACCELEROMETER, false);
-
-        LinearAccelerometer.setSensorObserver(null);
-        Aware.stopLinearAccelerometer(getContext());
-        Aware.setSetting(getContext(), Aware_Preferences.STATUS_LINEAR_ACCELEROMETER, false);
-
-        Gyroscope.setSensorObserver(null);
-        Aware.stopGyroscope(getContext());
-        Aware.setSetting(getContext(), Aware_Preferences.STATUS_GYROSCOPE, false);
-
-        Rotation.setSensorObserver(null);
-        Aware.stopRotation(getContext());
-        Aware.setSetting(getContext(), Aware_Preferences.STATUS_ROTATION, false);
-
+        stopSensors();
     }
 
     // Inflate BallView and start sensors
@@ -340,37 +332,47 @@ public class GameFragment extends Fragment {
         timer.setText(R.string.game_get_ready);
 
         // adding custom BallView to the fragment
+        ballPhysics.center();
+        ballRenderer.start();
         ballView = new BallView(getContext());
         containerLayout.addView(ballView);
 
         // starting sensors
-        Aware.startAccelerometer(getContext());
-        Aware.startLinearAccelerometer(getContext());
-        Aware.startGyroscope(getContext());
-        Aware.startRotation(getContext());
+        if (directCapture) {
+            deviceId = Aware.getSetting(getContext(), Aware_Preferences.DEVICE_ID);
+            sensorCapture.start();
+        } else {
+            Aware.startAccelerometer(getContext());
+            Aware.startLinearAccelerometer(getContext());
+            Aware.startGyroscope(getContext());
+            Aware.startRotation(getContext());
+
+            Accelerometer.setSensorObserver(observerAccelerometer);
+            LinearAccelerometer.setSensorObserver(observerLinearAccelerometer);
+            Gyroscope.setSensorObserver(observerGyroscope);
+            Rotation.setSensorObserver(observerRotation);
+        }
 
-        Accelerometer.setSensorObserver(observerAccelerometer);
-        LinearAccelerometer.setSensorObserver(observerLinearAccelerometer);
-        Gyroscope.setSensorObserver(observerGyroscope);
-        Rotation.setSensorObserver(observerRotation);
+        // making sample values empty (for second and following games)
+        session.clear();
+        sessionProfiler.start();
+        scoreRaw = 0;
+        scoreCounter = 0;
 
         // recording game settings to gamedata
-        gameData = "{\"gamedata\":[{\"ball_radius\":" + ballSize + ",";
-        gameData += "\"sensitivity\":" + sensitivity + ",";
-        gameData += "\"device_x_res\":" + deviceXres + ",";
-        gameData += "\"device_y_res\":" + deviceYres + "," + "\"samples\":[";
+        session.ballRadius = ballSize;
+        session.sensitivity = sensitivity;
+        session.deviceXres = deviceXres;
+        session.deviceYres = deviceYres;
+        session.frameStats.setRefreshPeriod(refreshPeriodNanos);
+        session.gameId = UUID.randomUUID().toString();
+
+        // long games are stored in bounded chunks while they are being recorded
+        gameChunker.start(gameDataFormat == Provider.Game_Data.FORMAT_CHUNKED ? session.gameId : null);
 
         // Retrieve last game score value
         lastScore = getActivity().getSharedPreferences("scorePref", MODE_PRIVATE).getString("lastScore", "0");
 
-        // making sample values empty (for second and following games)
-        accelSamples.setLength(0);
-        linaccelSamples.setLength(0);
-        gyroSamples.setLength(0);
-        rotationSamples.setLength(0);
-        scoreRaw = 0;
-        scoreCounter = 0;
-
         // starting timer
         countDownTimer.start();
 
@@ -385,6 +387,7 @@ public class GameFragment extends Fragment {
                 getString(R.string.game_done_2) + lastScore + getString(R.string.game_done_3);
 
         // updating UI
+        ballRenderer.stop();
         containerLayout.removeAllViews();
         ballView = null;
         playAgain.setVisibility(View.VISIBLE);
@@ -394,10 +397,48 @@ public class GameFragment extends Fragment {
         timer.setText(gameDone);
 
         // set ball coordinates to center for playinig again
-        ballXpos = ballXmax /2;
-        ballYpos = ballYmax /2;
+        ballPhysics.center();
 
         // Stopping sensors
+        stopSensors();
+
+        // resources used by this game
+        gamePersister.savePerfSession(sessionProfiler.stop(session,
+                directCapture ? getString(R.string.sensor_backend_direct) : getString(R.string.key_sensor_backend_value),
+                directCapture ? sensorCapture.getCpuTimeNanos() : -1));
+
+        // Record game score to SharedPref as the last one
+        SharedPreferences score = getActivity().getSharedPreferences("scorePref", MODE_PRIVATE);
+        SharedPreferences.Editor editor = score.edit();
+        editor.putString("lastScore", String.format("%.1f", finalScore));
+        editor.apply();
+
+        session.score = finalScore;
+        if (session.accelerometer.size() == 0) {
+            Toast.makeText(getContext(), R.string.game_collection_error, Toast.LENGTH_LONG).show();
+        }
+
+        // Handing the finished session over to the background writer, next game records into a fresh one
+        gameChunker.finish(session);
+        GameSession finished = session;
+        session = GameSession.obtain();
+        session.ensureCapacity(gameTime);
+
+        gamePersister.save(finished, gameDataFormat, System.currentTimeMillis(), new GamePersister.OnGameSavedListener() {
+            @Override
+            public void onGameSaved(GameSession session, Uri uri) {
+                session.recycle();
+                if (uri == null && getContext() != null) {
+                    Toast.makeText(getContext(), R.string.game_save_error, Toast.LENGTH_LONG).show();
+                }
+            }
+        });
+    }
+
+    // stops both capture backends
+    private void stopSensors() {
+        sensorCapture.stop();
+
         Accelerometer.setSensorObserver(null);
         Aware.stopAccelerometer(getContext());
         Aware.setSetting(getContext(), Aware_Preferences.STATUS_ACCELEROMETER, false);
@@ -413,118 +454,141 @@ public class GameFragment extends Fragment {
         Rotation.setSensorObserver(null);
         Aware.stopRotation(getContext());
         Aware.setSetting(getContext(), Aware_Preferences.STATUS_ROTATION, false);
+    }
 
+    // unboxing AWARE observer data; not every sensor reports an accuracy
+    private void onAwareSample(int stream, ContentValues data) {
+        Integer accuracy = data.getAsInteger(SAMPLE_KEY_ACCURACY);
+        onSensorSample(stream, data.getAsLong(SAMPLE_KEY_TIMESTAMP),
+                data.getAsString(SAMPLE_KEY_DEVICE_ID),
+                data.getAsDouble(SAMPLE_KEY_DOUBLE_VALUES_0),
+                data.getAsDouble(SAMPLE_KEY_DOUBLE_VALUES_1),
+                data.getAsDouble(SAMPLE_KEY_DOUBLE_VALUES_2),
+                accuracy != null ? accuracy : 0,
+                data.getAsString(SAMPLE_KEY_LABEL), -1);
+    }
 
-        // Adjusting data to final JSON format
-        String gamedata = gameData.substring(0, gameData.length()-1) + "],\"score\":"+ finalScore +"}],";
-        String accel, linaccel, gyro, rotation;
-
-        try {
-            accel = "\"accelerometer\":[" + accelSamples.substring(0, accelSamples.length()-1) + "],";
-        } catch (Exception e) {
-            accel = "\"accelerometer\":[\"not_activated\"],";
-            Toast.makeText(getContext(), R.string.game_collection_error, Toast.LENGTH_LONG).show();
+    // common entry point of both capture backends, called on the sensor thread; latency is -1 when unknown
+    private void onSensorSample(int stream, long timestamp, String deviceId, double value0, double value1,
+                                double value2, int accuracy, String label, long latencyNanos) {
+        if (stream == GameChunker.STREAM_ACCELEROMETER) {
+            ballPhysics.onAcceleration((float) value0, (float) -value1);
         }
 
-        try {
-            linaccel = "\"linearaccelerometer\":[" + linaccelSamples.substring(0, linaccelSamples.length()-1) + "],";
-        } catch (Exception e) {
-            linaccel = "\"linearaccelerometer\":[\"not_activated\"],";
-        }
+        if (!samplingGate.enter()) return;
 
         try {
-            gyro = "\"gyroscope\":[" + gyroSamples.substring(0, gyroSamples.length()-1) + "],";
-        } catch (Exception e) {
-            gyro = "\"gyroscope\":[\"not_activated\"],";
+            recordSample(stream, timestamp, deviceId, value0, value1, value2, accuracy, label, latencyNanos);
+        } finally {
+            samplingGate.exit();
         }
+    }
 
-        try {
-            rotation = "\"rotation\":[" + rotationSamples.substring(0, rotationSamples.length()-1) + "]}";
-        } catch (Exception e) {
-            rotation = "\"rotation\":[\"not_activated\"]}";
+    private void recordSample(int stream, long timestamp, String deviceId, double value0, double value1,
+                              double value2, int accuracy, String label, long latencyNanos) {
+        switch (stream) {
+            case GameChunker.STREAM_ACCELEROMETER:
+                session.accelerometer.record(timestamp, deviceId, value0, value1, value2, accuracy, label);
+                gameChunker.onSample(stream, session.accelerometer);
+                session.accelerometerTremor.add(timestamp, value0, value1, value2);
+                session.accelerometerDelivery.onSample(timestamp, latencyNanos);
+                break;
+
+            case GameChunker.STREAM_LINEAR_ACCELEROMETER:
+                session.linearAccelerometer.record(timestamp, deviceId, value0, value1, value2, accuracy, label);
+                gameChunker.onSample(stream, session.linearAccelerometer);
+                session.linearAccelerometerDelivery.onSample(timestamp, latencyNanos);
+                break;
+
+            case GameChunker.STREAM_GYROSCOPE:
+                session.gyroscope.record(timestamp, deviceId, value0, value1, value2, accuracy, label);
+                gameChunker.onSample(stream, session.gyroscope);
+                session.gyroscopeTremor.add(timestamp, value0, value1, value2);
+                session.gyroscopeDelivery.onSample(timestamp, latencyNanos);
+                break;
+
+            case GameChunker.STREAM_ROTATION:
+                session.rotation.record(timestamp, deviceId, value0, value1, value2, accuracy, label);
+                gameChunker.onSample(stream, session.rotation);
+                session.rotationDelivery.onSample(timestamp, latencyNanos);
+                break;
         }
-
-        String result = gamedata + accel + linaccel + gyro + rotation;
-
-
-        // Record game score to SharedPref as the last one
-        SharedPreferences score = getActivity().getSharedPreferences("scorePref", MODE_PRIVATE);
-        SharedPreferences.Editor editor = score.edit();
-        editor.putString("lastScore", String.format("%.1f", finalScore));
-        editor.commit();
-
-        // Inserting data to database
-        ContentValues values = new ContentValues();
-        values.put(Provider.Game_Data.TIMESTAMP, System.currentTimeMillis());
-        values.put(Provider.Game_Data.DEVICE_ID, Aware.getSetting(getContext(), Aware_Preferences.DEVICE_ID));
-        values.put(Provider.Game_Data.DATA, result);
-        getContext().getContentResolver().insert(Provider.Game_Data.CONTENT_URI, values);
     }
 
-    // updating ball's X and Y positioning
-    private void updateBall(long timestamp) {
-        ballXvel = (ballXaccel * sensitivity);
-        ballYvel = (ballYaccel * sensitivity);
-
-        float xS = (ballXvel / 2) * sensitivity;
-        float yS = (ballYvel / 2) * sensitivity;
-
-        ballXpos -= xS;
-        ballYpos -= yS;
+    // ball samples and score are taken once per physics step, at a fixed rate
+    // render thread: the step clock restarts between two frames and the gate opens right after,
+    // so no step is recorded against the previous game's clock
+    private final Runnable startSampling = new Runnable() {
+        @Override
+        public void run() {
+            if (samplingGate.isOpen()) return;
+            ballPhysics.startClock();
+            samplingGate.open();
+        }
+    };
 
-        float changeX = ballXpos - ballXmax/2;
-        float changeY = ballYpos - ballYmax/2;
-        double distance = Math.sqrt(changeX*changeX + changeY*changeY);
+    private final BallPhysics.StepListener stepListener = new BallPhysics.StepListener() {
+        @Override
+        public void onStep(long timestamp) {
+            if (!samplingGate.enter()) return;
+
+            try {
+                double distance = ballPhysics.getDistance();
+                session.ball.record(timestamp, ballPhysics.getChangeX(), ballPhysics.getChangeY(), distance);
+                gameChunker.onBallSample(session.ball);
+
+                scoreRaw += distance;
+                scoreCounter += 1;
+            } finally {
+                samplingGate.exit();
+            }
+        }
+    };
 
-        if (sampling) {
-            gameData += "{\"timestamp\":" + timestamp + ",";
-            gameData += "\"ball_x\":" + changeX + ",";
-            gameData += "\"ball_y\":" + changeY + ",";
-            gameData += "\"distance\":" + distance + "},";
+    // frame timing is only recorded while sampling, so the countdown doesn't count
+    private final BallRenderer.FrameListener frameListener = new BallRenderer.FrameListener() {
+        @Override
+        public void onFrame(long frameTimeNanos, boolean drawn) {
+            if (!samplingGate.enter()) return;
 
-            scoreRaw += distance;
-            scoreCounter += 1;
+            try {
+                session.frameStats.onFrame(frameTimeNanos, drawn);
+            } finally {
+                samplingGate.exit();
+            }
         }
+    };
 
-        //off screen movements
-        if (ballXpos > ballXmax) {
-            ballXpos = ballXmax;
-        } else if (ballXpos < 0) {
-            ballXpos = 0;
-        }
+    // one frame of the game, drawn on the render thread
+    private final BallRenderer.Scene ballScene = new BallRenderer.Scene() {
+        @Override
+        public void draw(Canvas canvas, float ballX, float ballY) {
+            canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+
+            // drawing circles, both pre-composited into one layer
+            canvas.drawBitmap(circles, bigCircleXpos, bigCircleYpos, null);
 
-        if (ballYpos > ballYmax) {
-            ballYpos = ballYmax;
-        } else if (ballYpos < 0) {
-            ballYpos = 0;
+            // drawing the ball
+            canvas.drawBitmap(ball, ballX, ballY, null);
         }
-    }
+    };
 
     // custom view for BallGame
-    private class BallView extends View {
+    private class BallView extends SurfaceView {
 
         public BallView(Context context) {
             super(context);
-            // ball bitmap initializing
-            Bitmap ballSrc = BitmapFactory.decodeResource(getResources(), R.drawable.ball);
-            ball = Bitmap.createScaledBitmap(ballSrc, ballSize, ballSize, true);
+            // ball bitmap initializing, decoded only for the first game with this size
+            ball = BitmapCache.getScaled(getResources(), R.drawable.ball, ballSize);
 
             // circles bitmap initializing
-            Bitmap smallSrc = BitmapFactory.decodeResource(getResources(), R.drawable.circle_small);
-            circleSmall = Bitmap.createScaledBitmap(smallSrc, smallCircleSize, smallCircleSize, true);
-            Bitmap bigSrc = BitmapFactory.decodeResource(getResources(), R.drawable.circle_big);
-            circleBig = Bitmap.createScaledBitmap(bigSrc, bigCircleSize, bigCircleSize, true);
-        }
+            circles = BitmapCache.getCircles(getResources(), R.drawable.circle_small, smallCircleSize,
+                    R.drawable.circle_big, bigCircleSize);
 
-        @Override
-        protected void onDraw(Canvas canvas) {
-            // drawing circles
-            canvas.drawBitmap(circleSmall, smallCircleXpos, smallCircleYpos, null);
-            canvas.drawBitmap(circleBig, bigCircleXpos, bigCircleYpos, null);
-
-            // drawing (and redrawing) the ball
-            canvas.drawBitmap(ball, ballXpos, ballYpos, null);
-            invalidate();
+            // transparent surface above the window, so the timer text stays visible
+            setZOrderOnTop(true);
+            getHolder().setFormat(PixelFormat.TRANSPARENT);
+            getHolder().addCallback(ballRenderer);
         }
     }
 }
@@ -0,0 +1,192 @@
+package com.aware.app.stop;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Base64;
+import android.util.Log;
+
+import com.aware.Aware;
+import com.aware.Aware_Preferences;
+import com.aware.app.stop.database.Provider;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/*
+ * Single-writer background pipeline that serializes finished game sessions and
+ * chunks of running ones, and inserts them into Provider, off the UI thread.
+ */
+
+public class GamePersister implements GameChunker.ChunkSink {
+
+    // Callback delivered on the main thread once a session is stored (uri is null on failure)
+    public interface OnGameSavedListener {
+        void onGameSaved(GameSession session, Uri uri);
+    }
+
+    // one writer thread for all games, so rows are inserted in the order games finish
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "stop-game-writer");
+        }
+    });
+
+    // serializers are only touched by the writer thread, so their buffers are safely reused
+    private static final GameDataWriter gameDataWriter = new GameDataWriter();
+    private static final GameDataEncoder gameDataEncoder = new GameDataEncoder();
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // AWARE device ID, only read and cached by the writer thread
+    private static String deviceId;
+
+    private final Context context;
+
+    public GamePersister(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Serializes and stores a finished session in the background. The session must not be
+     * modified until the listener is called.
+     *
+     * @param session finished game session
+     * @param format one of Provider.Game_Data.FORMAT_*
+     * @param timestamp time the game was finished
+     * @param listener called on the main thread when the session is stored, may be null
+     */
+    public void save(final GameSession session, final int format, final long timestamp,
+                     final OnGameSavedListener listener) {
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                Uri uri = null;
+                try {
+                    uri = insert(session, format, timestamp);
+                } catch (RuntimeException e) {
+                    Log.e(MainActivity.STOP_TAG, "Failed to store game session", e);
+                }
+
+                final Uri result = uri;
+                if (listener != null) {
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onGameSaved(session, result);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Stores a chunk of a running game in the background. Chunks are written in the order
+     * they are submitted, before the Game_Data row of their game.
+     */
+    @Override
+    public void onChunk(final GameChunk chunk) {
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ContentValues values = new ContentValues();
+                    values.put(Provider.Game_Chunks.TIMESTAMP, System.currentTimeMillis());
+                    values.put(Provider.Game_Chunks.DEVICE_ID, getDeviceId());
+                    values.put(Provider.Game_Chunks.GAME_ID, chunk.gameId);
+                    values.put(Provider.Game_Chunks.SENSOR, chunk.sensor);
+                    values.put(Provider.Game_Chunks.SEQUENCE, chunk.sequence);
+                    values.put(Provider.Game_Chunks.DATA, gameDataWriter.writeChunk(chunk));
+                    context.getContentResolver().insert(Provider.Game_Chunks.CONTENT_URI, values);
+                } catch (RuntimeException e) {
+                    Log.e(MainActivity.STOP_TAG, "Failed to store game chunk", e);
+                } finally {
+                    chunk.recycle();
+                }
+            }
+        });
+    }
+
+    /**
+     * Deletes the chunks of an aborted game in the background, after the chunks submitted before,
+     * so no chunks without a Game_Data row are left to be synced
+     */
+    public void discardChunks(final String gameId) {
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    context.getContentResolver().delete(Provider.Game_Chunks.CONTENT_URI,
+                            Provider.Game_Chunks.GAME_ID + " = ?", new String[]{gameId});
+                } catch (RuntimeException e) {
+                    Log.e(MainActivity.STOP_TAG, "Failed to delete chunks of aborted game", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Stores the Perf_Session row of a game in the background, after the games submitted before it
+     */
+    public void savePerfSession(final ContentValues values) {
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    values.put(Provider.Perf_Session.DEVICE_ID, getDeviceId());
+                    context.getContentResolver().insert(Provider.Perf_Session.CONTENT_URI, values);
+                } catch (RuntimeException e) {
+                    Log.e(MainActivity.STOP_TAG, "Failed to store perf session", e);
+                }
+            }
+        });
+    }
+
+    private Uri insert(GameSession session, int format, long timestamp) {
+        String data;
+        if (format == Provider.Game_Data.FORMAT_BINARY) {
+            data = Base64.encodeToString(gameDataEncoder.encode(session), Base64.NO_WRAP);
+        } else if (format == Provider.Game_Data.FORMAT_CHUNKED || format == Provider.Game_Data.FORMAT_FEATURES) {
+            // samples are already stored in Game_Chunks (chunked) or dropped (features),
+            // the features and delivery stats in the header are kept
+            data = gameDataWriter.write(session, false, true);
+        } else if (format == Provider.Game_Data.FORMAT_JSON_STATS) {
+            data = gameDataWriter.write(session, true, true);
+        } else {
+            format = Provider.Game_Data.FORMAT_JSON;
+            data = gameDataWriter.write(session);
+        }
+
+        ContentValues values = new ContentValues();
+        values.put(Provider.Game_Data.TIMESTAMP, timestamp);
+        values.put(Provider.Game_Data.DEVICE_ID, getDeviceId());
+        values.put(Provider.Game_Data.DATA, data);
+        values.put(Provider.Game_Data.FORMAT_VERSION, format);
+        values.put(Provider.Game_Data.GAME_ID, session.gameId);
+        values.put(Provider.Game_Data.FRAMES, session.frameStats.getFrames());
+        values.put(Provider.Game_Data.FRAME_TIME_P50, session.frameStats.getPercentile(0.50));
+        values.put(Provider.Game_Data.FRAME_TIME_P95, session.frameStats.getPercentile(0.95));
+        values.put(Provider.Game_Data.FRAME_TIME_P99, session.frameStats.getPercentile(0.99));
+        values.put(Provider.Game_Data.DROPPED_FRAMES, session.frameStats.getDroppedFrames());
+        return context.getContentResolver().insert(Provider.Game_Data.CONTENT_URI, values);
+    }
+
+    private String getDeviceId() {
+        if (deviceId == null || deviceId.length() == 0) {
+            deviceId = Aware.getSetting(context, Aware_Preferences.DEVICE_ID);
+        }
+        return deviceId;
+    }
+}
@@ -0,0 +1,95 @@
+package com.aware.app.stop;
+
+/*
+ * Everything recorded during one ball game: settings, ball track, score and sensor streams
+ */
+
+public class GameSession {
+
+    // identifier linking the Game_Data row with its Game_Chunks rows
+    public String gameId;
+
+    // game settings
+    public int ballRadius;
+    public float sensitivity;
+    public int deviceXres;
+    public int deviceYres;
+
+    // game result
+    public double score;
+
+    // recorded data
+    public final BallRecorder ball = new BallRecorder();
+    public final SampleRecorder accelerometer = new SampleRecorder();
+    public final SampleRecorder linearAccelerometer = new SampleRecorder();
+    public final SampleRecorder gyroscope = new SampleRecorder();
+    public final SampleRecorder rotation = new SampleRecorder();
+
+    // tremor features computed while recording
+    public final TremorFeatures accelerometerTremor = new TremorFeatures();
+    public final TremorFeatures gyroscopeTremor = new TremorFeatures();
+
+    // delivery quality of the sensor streams
+    public final DeliveryStats accelerometerDelivery = new DeliveryStats();
+    public final DeliveryStats linearAccelerometerDelivery = new DeliveryStats();
+    public final DeliveryStats gyroscopeDelivery = new DeliveryStats();
+    public final DeliveryStats rotationDelivery = new DeliveryStats();
+
+    // rendering quality while sampling
+    public final FrameStats frameStats = new FrameStats();
+
+    // finished sessions kept for reuse, so a new game can start while the last one is being stored
+    private static final GameSession[] pool = new GameSession[2];
+    private static int poolSize;
+
+    public static GameSession obtain() {
+        synchronized (pool) {
+            if (poolSize > 0) {
+                GameSession session = pool[--poolSize];
+                pool[poolSize] = null;
+                return session;
+            }
+        }
+        return new GameSession();
+    }
+
+    // returns a session that is no longer used to the pool
+    public void recycle() {
+        clear();
+        synchronized (pool) {
+            if (poolSize < pool.length) {
+                pool[poolSize++] = this;
+            }
+        }
+    }
+
+    // makes sure a game of the given length in milliseconds is recorded without growing buffers
+    public void ensureCapacity(int gameTime) {
+        int capacity = SampleRecorder.capacityFor(gameTime);
+        ball.ensureCapacity(capacity);
+        accelerometer.ensureCapacity(capacity);
+        linearAccelerometer.ensureCapacity(capacity);
+        gyroscope.ensureCapacity(capacity);
+        rotation.ensureCapacity(capacity);
+        accelerometerTremor.ensureCapacity(TremorFeatures.capacityFor(capacity));
+        gyroscopeTremor.ensureCapacity(TremorFeatures.capacityFor(capacity));
+    }
+
+    // making sample values empty (for second and following games)
+    public void clear() {
+        gameId = null;
+        score = 0;
+        ball.clear();
+        accelerometer.clear();
+        linearAccelerometer.clear();
+        gyroscope.clear();
+        rotation.clear();
+        accelerometerTremor.clear();
+        gyroscopeTremor.clear();
+        accelerometerDelivery.clear();
+        linearAccelerometerDelivery.clear();
+        gyroscopeDelivery.clear();
+        rotationDelivery.clear();
+        frameStats.clear();
+    }
+}
@@ -23,6 +23,7 @@ import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.view.WindowManager;
 import android.widget.Button;
 import android.widget.Toast;
@@ -31,11 +32,8 @@ import com.aware.Aware;
 import com.aware.Aware_Preferences;
 import com.aware.app.stop.database.Provider;
 import com.aware.providers.Aware_Provider;
-import com.aware.utils.Scheduler;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 
-import org.json.JSONException;
-
 import java.util.Random;
 
 public class MainActivity extends AppCompatActivity {
@@ -63,61 +61,31 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        // MainActivity starts the launch when it is opened from a notification or the launcher
+        // history, not when it is recreated after a configuration change
+        if (savedInstanceState == null) StartupTrace.start(false);
+        StartupTrace.mark(StartupTrace.MAIN_CREATED);
+        StartupTrace.begin("main_create");
         super.onCreate(savedInstanceState);
+
+        StartupTrace.begin("main_inflate");
         setContentView(R.layout.activity_main);
+        StartupTrace.end();
+        StartupTrace.mark(StartupTrace.MAIN_INFLATED);
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
 
         // Setting up application preferences
         PreferenceManager.setDefaultValues(getApplicationContext(), R.xml.pref_ball_game, true);
         Aware.isBatteryOptimizationIgnored(getApplicationContext(), PACKAGE_NAME);
+
+        // sensor settings stay here, the game on the first screen may start the sensors right away
         Aware.setSetting(getApplicationContext(), Aware_Preferences.FREQUENCY_ACCELEROMETER, 20000);
         Aware.setSetting(getApplicationContext(), Aware_Preferences.DEBUG_DB_SLOW, true);
         Aware.setSetting(getApplicationContext(), Aware_Preferences.WEBSERVICE_SILENT, true);
 
-
-        // Double checking if the consent data is synced
-        Cursor cursorJoined = getApplicationContext().getContentResolver().query(Aware_Provider.Aware_Studies.CONTENT_URI,
-                new String[]{Aware_Provider.Aware_Studies.STUDY_JOINED}, null, null, null);
-
-        Cursor cursorConsent = getApplicationContext().getContentResolver().query(Provider.Consent_Data.CONTENT_URI,
-                new String[]{Provider.Consent_Data.TIMESTAMP}, null, null, null);
-
-        if (cursorJoined!=null && cursorJoined.getCount()>0 && cursorConsent!=null && cursorConsent.getCount()>0) {
-            cursorJoined.moveToFirst();
-            cursorConsent.moveToFirst();
-            double joined = cursorJoined.getDouble(cursorJoined.getColumnIndexOrThrow("double_join"));
-            double consent = cursorConsent.getDouble(cursorConsent.getColumnIndexOrThrow("timestamp"));
-
-            if (consent<joined) {
-                ContentValues values = new ContentValues();
-                values.put(Provider.Consent_Data.TIMESTAMP, joined);
-                getContentResolver().update(Provider.Consent_Data.CONTENT_URI, values,null, null);
-
-                cursorJoined.close();
-                cursorConsent.close();
-            }
-        }
-
         // Get an instance of the NotificationManager service
         manager = (NotificationManager) getApplicationContext().getSystemService(NOTIFICATION_SERVICE);
 
-        // Tracking notification opening state
-        Intent intent  = getIntent();
-        String time = intent.getStringExtra(NOTIFICATION_TRIGGER_EVENT);
-        if (time != null) {
-            String event = time + NOTIFICATION_EVENT_OPENED;
-
-            //Insert notification opened event to db
-            ContentValues values = new ContentValues();
-            values.put(Provider.Notification_Data.TIMESTAMP, System.currentTimeMillis());
-            values.put(Provider.Notification_Data.DEVICE_ID, Aware.getSetting(getApplicationContext(), Aware_Preferences.DEVICE_ID));
-            values.put(Provider.Notification_Data.EVENT, event);
-            getContentResolver().insert(Provider.Notification_Data.CONTENT_URI, values);
-        }
-
-        // Schedule notifications to show four times per day
-        scheduleNotification();
-
         // UI initialization
         mMainNav = findViewById(R.id.main_nav);
 
@@ -141,6 +109,28 @@ public class MainActivity extends AppCompatActivity {
                 }
             }
         });
+
+        // Consent cross-check, notification event and schedules are started after the first frame
+        final String notificationEvent = getIntent().getStringExtra(NOTIFICATION_TRIGGER_EVENT);
+        final View content = findViewById(android.R.id.content);
+        content.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                content.getViewTreeObserver().removeOnPreDrawListener(this);
+                StartupTrace.mark(StartupTrace.MAIN_FIRST_FRAME);
+
+                content.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // posted, so the game frame drawn in the same traversal is part of the launch
+                        StartupTrace.record(MainActivity.this);
+                        new StartupInitializer(getApplicationContext()).start(notificationEvent);
+                    }
+                });
+                return true;
+            }
+        });
+        StartupTrace.end();
     }
 
     @Override
@@ -368,91 +358,6 @@ public class MainActivity extends AppCompatActivity {
         return super.onOptionsItemSelected(item);
     }
 
-    // Notification scheduler: four times per day
-    private void scheduleNotification() {
-
-        String GAME_SCHEDULE_MORNING = getString(R.string.notification_game_morning);
-        String GAME_SCHEDULE_NOON = getString(R.string.notification_game_noon);
-        String GAME_SCHEDULE_AFTERNOON = getString(R.string.notification_game_afternoon);
-        String GAME_SCHEDULE_EVENING = getString(R.string.notification_game_evening);
-        String SURVEY_SCHEDULE = getString(R.string.notification_survey);
-
-        try {
-            // Morning notification 8:00 - 11:59
-            Scheduler.Schedule morning = Scheduler.getSchedule(this, GAME_SCHEDULE_MORNING);
-            if (morning == null) {
-                morning = new Scheduler.Schedule(GAME_SCHEDULE_MORNING);
-                morning.addHour(8).addHour(11)
-                        .random(1,0)
-                        .setActionType(Scheduler.ACTION_TYPE_BROADCAST)
-                        .setActionIntentAction(MainActivity.ACTION_STOP_FINGERPRINT)
-                        .addActionExtra(NOTIFICATION_TRIGGER_EVENT, GAME_SCHEDULE_MORNING);
-
-                Scheduler.saveSchedule(getApplicationContext(), morning);
-                Aware.startScheduler(getApplicationContext());
-            }
-
-            // Noon notification 12:00 - 14:59
-            Scheduler.Schedule noon = Scheduler.getSchedule(this, GAME_SCHEDULE_NOON);
-            if (noon == null) {
-                noon = new Scheduler.Schedule(GAME_SCHEDULE_NOON);
-                noon.addHour(12).addHour(14)
-                        .random(1,0)
-                        .setActionType(Scheduler.ACTION_TYPE_BROADCAST)
-                        .setActionIntentAction(MainActivity.ACTION_STOP_FINGERPRINT)
-                        .addActionExtra(NOTIFICATION_TRIGGER_EVENT, GAME_SCHEDULE_NOON);
-
-                Scheduler.saveSchedule(getApplicationContext(), noon);
-                Aware.startScheduler(getApplicationContext());
-            }
-
-            // Afternoon notification 15:00 - 18:59
-            Scheduler.Schedule afternoon = Scheduler.getSchedule(this, GAME_SCHEDULE_AFTERNOON);
-            if (afternoon == null) {
-                afternoon = new Scheduler.Schedule(GAME_SCHEDULE_AFTERNOON);
-                afternoon.addHour(15).addHour(18)
-                        .random(1,0)
-                        .setActionType(Scheduler.ACTION_TYPE_BROADCAST)
-                        .setActionIntentAction(MainActivity.ACTION_STOP_FINGERPRINT)
-                        .addActionExtra(NOTIFICATION_TRIGGER_EVENT, GAME_SCHEDULE_AFTERNOON);
-
-                Scheduler.saveSchedule(getApplicationContext(), afternoon);
-                Aware.startScheduler(getApplicationContext());
-            }
-
-            // Evening notification 19:00 - 21:59
-            Scheduler.Schedule evening = Scheduler.getSchedule(this, GAME_SCHEDULE_EVENING);
-            if (evening == null) {
-                evening = new Scheduler.Schedule(GAME_SCHEDULE_EVENING);
-                evening.addHour(19).addHour(21)
-                        .random(1,0)
-                        .setActionType(Scheduler.ACTION_TYPE_BROADCAST)
-                        .setActionIntentAction(MainActivity.ACTION_STOP_FINGERPRINT)
-                        .addActionExtra(NOTIFICATION_TRIGGER_EVENT, GAME_SCHEDULE_EVENING);
-
-                Scheduler.saveSchedule(getApplicationContext(), evening);
-                Aware.startScheduler(getApplicationContext());
-            }
-
-            // Survey notification 10:00 - 11:00
-            Scheduler.Schedule survey = Scheduler.getSchedule(this, SURVEY_SCHEDULE);
-            if (survey == null) {
-                survey = new Scheduler.Schedule(SURVEY_SCHEDULE);
-                survey.addHour(10)
-                        .random(1, 0)
-                        .setActionType(Scheduler.ACTION_TYPE_BROADCAST)
-                        .setActionIntentAction(MainActivity.ACTION_STOP_SURVEY)
-                        .addActionExtra(NOTIFICATION_TRIGGER_EVENT, SURVEY_SCHEDULE);
-
-                Scheduler.saveSchedule(getApplicationContext(), survey);
-                Aware.startScheduler(getApplicationContext());
-            }
-
-        } catch (JSONException e) {
-            e.printStackTrace();
-        }
-    }
-
     // Notification set up
     private static void notifyShow(Context c, int notifyId, String notifyText, String triggerEvent) {
 
@@ -8,22 +8,25 @@ import android.content.ContentValues;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.database.Cursor;
+import android.database.ContentObserver;
 import android.net.ConnectivityManager;
+import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
 import android.speech.RecognizerIntent;
+import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.AdapterView;
 import android.widget.Button;
-import android.widget.CursorAdapter;
 import android.widget.DatePicker;
 import android.widget.ImageButton;
-import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.TimePicker;
 import android.widget.Toast;
@@ -36,6 +39,7 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
 import java.util.concurrent.ExecutionException;
@@ -45,11 +49,13 @@ public class MedicationFragment extends Fragment {
     // UI components
     private Button nowBtn, specifyBtn;
     private ImageButton micBtn;
-    private ListView medicationList;
+    private RecyclerView medicationList;
     private TextView noRecords;
 
-    // Cursor to access the internal database
-    Cursor cursor;
+    // Paged journal loaded in the background
+    private MedicationJournal journal;
+    private MedicationAdapter adapter;
+    private ContentObserver medicationObserver;
 
     private final static int RC_SPEECH_INPUT = 1;
 
@@ -65,28 +71,87 @@ public class MedicationFragment extends Fragment {
 
         medicationList = view.findViewById(R.id.medicationList);
         noRecords = view.findViewById(R.id.noRecords);
-        medicationList.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        adapter = new MedicationAdapter();
+        medicationList.setLayoutManager(new LinearLayoutManager(getContext()));
+        medicationList.setAdapter(adapter);
+
+        journal = new MedicationJournal(getContext().getContentResolver(), new MedicationJournal.Callback() {
+            @Override
+            public void onRefreshed(List<MedicationRecord> records, int firstNumber, boolean hasMore,
+                                    DiffUtil.DiffResult diff, int version) {
+                // the list changed while the diff was computed, diff against the current one
+                if (version != adapter.version) {
+                    refreshList();
+                    return;
+                }
+                adapter.setRecords(records, firstNumber, hasMore, diff);
+                updateNoRecords();
+            }
+
+            @Override
+            public void onPageLoaded(List<MedicationRecord> page, boolean hasMore) {
+                adapter.appendPage(page);
+                adapter.setHasMore(hasMore);
+            }
+
+            @Override
+            public void onRecordChanged(long id, MedicationRecord record) {
+                adapter.applyChange(id, record);
+                updateNoRecords();
+            }
+
+            @Override
+            public void onRefreshNeeded() {
+                refreshList();
+            }
+
+            @Override
+            public void onRecordInserted(long pendingId, MedicationRecord record) {
+                adapter.replace(pendingId, record);
+                updateNoRecords();
+                if (record == null) {
+                    Toast.makeText(getContext(), R.string.medication_not_saved, Toast.LENGTH_SHORT).show();
+                }
+            }
+
             @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                modifyRecord(id);
+            public void onMutationFailed(long id, MedicationRecord previous) {
+                // the record is shown as it still is in the database
+                adapter.applyChange(id, previous);
+                updateNoRecords();
+                Toast.makeText(getContext(), R.string.medication_not_saved, Toast.LENGTH_SHORT).show();
             }
         });
 
+        // inserts, edits and deletes from anywhere are applied to the journal as they happen
+        medicationObserver = new ContentObserver(new Handler()) {
+            @Override
+            public void onChange(boolean selfChange) {
+                onChange(selfChange, null);
+            }
+
+            @Override
+            public void onChange(boolean selfChange, Uri uri) {
+                // a single changed row (insert, edit or delete) is loaded by itself, other changes
+                // re-read the loaded records
+                long id = MedicationJournal.idOf(uri);
+                if (id >= 0) {
+                    journal.loadRecord(id);
+                } else {
+                    refreshList();
+                }
+            }
+        };
+        getContext().getContentResolver().registerContentObserver(Provider.Medication_Data.CONTENT_URI, true, medicationObserver);
+
         // Now button immidiately records timestamp to db
         nowBtn = view.findViewById(R.id.nowBtn);
         nowBtn.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
                 // Inserting data to database
-                ContentValues values = new ContentValues();
-                String timestamp = String.valueOf(System.currentTimeMillis());
-                values.put(Provider.Medication_Data.TIMESTAMP, timestamp);
-                values.put(Provider.Medication_Data.DEVICE_ID, Aware.getSetting(getContext(), Aware_Preferences.DEVICE_ID));
-                values.put(Provider.Medication_Data.MEDICATION_TIMESTAMP, timestamp);
-                getContext().getContentResolver().insert(Provider.Medication_Data.CONTENT_URI, values);
+                insertRecord(System.currentTimeMillis());
                 Toast.makeText(getContext(), R.string.medication_recorded, Toast.LENGTH_SHORT).show();
-
-                updateList();
             }
         });
 
@@ -130,15 +195,9 @@ public class MedicationFragment extends Fragment {
                                 if (specified.getTimeInMillis() <= System.currentTimeMillis()) {
 
                                     // Date is specified, write it to db
-                                    ContentValues values = new ContentValues();
-                                    values.put(Provider.Medication_Data.TIMESTAMP, System.currentTimeMillis());
-                                    values.put(Provider.Medication_Data.MEDICATION_TIMESTAMP, specified.getTimeInMillis());
-                                    values.put(Provider.Medication_Data.DEVICE_ID, Aware.getSetting(getContext(), Aware_Preferences.DEVICE_ID));
-                                    getContext().getContentResolver().insert(Provider.Medication_Data.CONTENT_URI, values);
+                                    insertRecord(specified.getTimeInMillis());
                                     Toast.makeText(getContext(), R.string.medication_recorded, Toast.LENGTH_SHORT).show();
 
-                                    updateList();
-
                                 } else {
                                     Toast.makeText(getContext(), R.string.medication_future, Toast.LENGTH_SHORT).show();
                                 }
@@ -163,16 +222,16 @@ public class MedicationFragment extends Fragment {
     @Override
     public void onResume() {
         super.onResume();
-        updateList();
+        refreshList();
     }
 
     @Override
-    public void onDestroy() {
-        super.onDestroy();
+    public void onDestroyView() {
+        super.onDestroyView();
 
-        if (cursor != null) {
-            cursor.close();
-        }
+        // pages still being loaded are dropped
+        getContext().getContentResolver().unregisterContentObserver(medicationObserver);
+        journal.close();
     }
 
     @Override
@@ -236,14 +295,9 @@ public class MedicationFragment extends Fragment {
                             if (time <= System.currentTimeMillis()) {
 
                                 // Date is OK, write it to db
-                                ContentValues values = new ContentValues();
-                                values.put(Provider.Medication_Data.TIMESTAMP, System.currentTimeMillis());
-                                values.put(Provider.Medication_Data.MEDICATION_TIMESTAMP, time);
-                                values.put(Provider.Medication_Data.DEVICE_ID, Aware.getSetting(getContext(), Aware_Preferences.DEVICE_ID));
-                                getContext().getContentResolver().insert(Provider.Medication_Data.CONTENT_URI, values);
+                                insertRecord(time);
 
                                 Toast.makeText(getContext(), R.string.medication_recorded, Toast.LENGTH_SHORT).show();
-                                updateList();
 
                             } else {
                                 Toast.makeText(getContext(), R.string.medication_future, Toast.LENGTH_SHORT).show();
@@ -278,14 +332,9 @@ public class MedicationFragment extends Fragment {
                                             if (calendar.getTimeInMillis() <= System.currentTimeMillis()) {
 
                                                 // Date is fixed, write it to db
-                                                ContentValues values = new ContentValues();
-                                                values.put(Provider.Medication_Data.TIMESTAMP, System.currentTimeMillis());
-                                                values.put(Provider.Medication_Data.MEDICATION_TIMESTAMP, calendar.getTimeInMillis());
-                                                values.put(Provider.Medication_Data.DEVICE_ID, Aware.getSetting(getContext(), Aware_Preferences.DEVICE_ID));
-                                                getContext().getContentResolver().insert(Provider.Medication_Data.CONTENT_URI, values);
+                                                insertRecord(calendar.getTimeInMillis());
 
                                                 Toast.makeText(getContext(), R.string.medication_recorded, Toast.LENGTH_SHORT).show();
-                                                updateList();
 
                                             } else {
                                                 Toast.makeText(getContext(), R.string.medication_future, Toast.LENGTH_SHORT).show();
@@ -313,38 +362,32 @@ public class MedicationFragment extends Fragment {
         }
     }
 
-    // Update ListView with the new cursor query
-    private void updateList() {
-
-        medicationList.setAdapter(null);
-
-        String[] columns = new String[]{Provider.Medication_Data._ID, Provider.Medication_Data.MEDICATION_TIMESTAMP};
-        String order = Provider.Medication_Data.MEDICATION_TIMESTAMP + " DESC";
-        cursor = getContext().getContentResolver().query(Provider.Medication_Data.CONTENT_URI, columns, null, null, order);
+    // Re-read the loaded records in the background, only the differences reach the list
+    private void refreshList() {
+        journal.refresh(new ArrayList<>(adapter.records), adapter.firstNumber, adapter.version);
+    }
 
-        if (cursor != null) {
-            if (cursor.getCount() >0) {
-                if (noRecords.getVisibility() == View.VISIBLE) noRecords.setVisibility(View.INVISIBLE);
+    // Shows the record right away, it is written to db in the background
+    private void insertRecord(long medicationTimestamp) {
+        ContentValues values = new ContentValues();
+        values.put(Provider.Medication_Data.TIMESTAMP, System.currentTimeMillis());
+        values.put(Provider.Medication_Data.MEDICATION_TIMESTAMP, medicationTimestamp);
+        values.put(Provider.Medication_Data.DEVICE_ID, Aware.getSetting(getContext(), Aware_Preferences.DEVICE_ID));
 
-                MedicationCursorAdapter mcs = new MedicationCursorAdapter(getContext(), cursor, 0);
-                medicationList.setAdapter(mcs);
+        MedicationRecord pending = journal.insert(values);
+        adapter.applyChange(pending.id, pending);
+        updateNoRecords();
+    }
 
-            } else {
-                noRecords.setVisibility(View.VISIBLE);
-            }
-        }
+    private void updateNoRecords() {
+        noRecords.setVisibility(adapter.getItemCount() == 0 ? View.VISIBLE : View.INVISIBLE);
     }
 
     // Modifying timestamp on item click
-    private void modifyRecord(final long id) {
-
-        // query to db to retrieve timestamp for selected id
-        String[] columns = new String[]{Provider.Medication_Data._ID, Provider.Medication_Data.MEDICATION_TIMESTAMP};
-        String selection = Provider.Medication_Data._ID + " = " + id;
-        Cursor modify = getContext().getContentResolver().query(Provider.Medication_Data.CONTENT_URI, columns, selection , null, null);
-        modify.moveToFirst();
+    private void modifyRecord(final MedicationRecord record) {
 
-        final long time = modify.getLong(modify.getColumnIndexOrThrow("double_medication"));
+        // timestamp of the selected record is already loaded
+        final long time = record.timestamp;
         final Date date = new Date(time);
         final Calendar calendar = Calendar.getInstance();
         calendar.setTime(date);
@@ -381,12 +424,9 @@ public class MedicationFragment extends Fragment {
                                         if (calendar.getTimeInMillis() <= System.currentTimeMillis()) {
 
                                             // Date is fixed, write it to db
-                                            ContentValues update_values = new ContentValues();
-                                            update_values.put(Provider.Medication_Data.MEDICATION_TIMESTAMP, calendar.getTimeInMillis());
-                                            getContext().getContentResolver().update(Provider.Medication_Data.CONTENT_URI, update_values, Provider.Medication_Data._ID + "=" + id, null);
+                                            adapter.applyChange(record.id, journal.update(record, calendar.getTimeInMillis()));
 
                                             Toast.makeText(getContext(), R.string.medication_edited, Toast.LENGTH_SHORT).show();
-                                            updateList();
 
                                         } else {
                                             Toast.makeText(getContext(), R.string.medication_future, Toast.LENGTH_SHORT).show();
@@ -416,58 +456,174 @@ public class MedicationFragment extends Fragment {
                     public void onClick(DialogInterface dialog, int which) {
 
                         // Remove timestamp from db
-                        getContext().getContentResolver().delete(Provider.Medication_Data.CONTENT_URI, Provider.Medication_Data._ID + "=" + id, null);
+                        journal.delete(record);
+                        adapter.applyChange(record.id, null);
+                        updateNoRecords();
                         Toast.makeText(getContext(), R.string.medication_deleted, Toast.LENGTH_SHORT).show();
-                        updateList();
 
                     }
                 })
                 .setIcon(R.drawable.ic_medication_light)
                 .show();
-
-        modify.close();
     }
 
-    // Custom cursor adapter
-    private class MedicationCursorAdapter extends CursorAdapter {
+    // Journal adapter, records are numbered from the oldest one
+    private class MedicationAdapter extends RecyclerView.Adapter<MedicationAdapter.ViewHolder> {
 
-        int total = -1;
+        private final ArrayList<MedicationRecord> records = new ArrayList<>();
+        private int firstNumber;
+        private boolean hasMore;
 
-        private MedicationCursorAdapter(Context context, Cursor c, int flags) {
-            super(context, c, flags);
-            total = c.getCount();
+        // changes with every change of the shown records
+        private int version;
+
+        // re-read records, diff was computed from the shown ones of the current version
+        private void setRecords(List<MedicationRecord> records, int firstNumber, boolean hasMore, DiffUtil.DiffResult diff) {
+            this.records.clear();
+            this.records.addAll(records);
+            this.firstNumber = firstNumber;
+            this.hasMore = hasMore;
+            version++;
+            diff.dispatchUpdatesTo(this);
         }
 
+        private void appendPage(List<MedicationRecord> page) {
+            int start = records.size();
+            records.addAll(page);
+            version++;
+            notifyItemRangeInserted(start, page.size());
+        }
+
+        private void setHasMore(boolean hasMore) {
+            this.hasMore = hasMore;
+        }
+
+        // moves, inserts or removes a single record, record is null when it has been deleted
+        private void applyChange(long id, MedicationRecord record) {
+            int from = indexOf(id);
+            // already shown, e.g. our own insert reported back by the observer
+            if (from >= 0 && records.get(from) == record) return;
+
+            version++;
+            if (from >= 0) {
+                records.remove(from);
+                if (record == null) firstNumber--;
+            } else if (record != null) {
+                firstNumber++;
+            }
+
+            int to = -1;
+            if (record != null) {
+                to = insertionPoint(record);
+                // records older than the loaded pages are shown once their page is loaded
+                if (to == records.size() && hasMore) {
+                    to = -1;
+                } else {
+                    records.add(to, record);
+                }
+            }
+
+            if (from >= 0 && to >= 0) {
+                if (from != to) notifyItemMoved(from, to);
+                notifyItemChanged(to);
+            } else if (from >= 0) {
+                notifyItemRemoved(from);
+            } else if (to >= 0) {
+                notifyItemInserted(to);
+            }
+
+            // journal numbers that have shifted: the newer records above an insert or delete,
+            // the records passed by a move, all loaded ones for a record older than the loaded pages
+            if (from >= 0 && to >= 0) {
+                if (from != to) notifyItemRangeChanged(Math.min(from, to), Math.abs(from - to) + 1);
+            } else if (record != null && to < 0) {
+                notifyItemRangeChanged(0, records.size());
+            } else if (Math.max(from, to) > 0) {
+                notifyItemRangeChanged(0, Math.max(from, to));
+            }
+        }
+
+        // swaps a pending insert for the stored record, record is null when the insert failed
+        private void replace(long pendingId, MedicationRecord record) {
+            if (indexOf(pendingId) >= 0) {
+                applyChange(pendingId, record);
+            } else if (record == null) {
+                // the pending record was older than the loaded pages, only its number was counted
+                version++;
+                firstNumber--;
+                notifyItemRangeChanged(0, records.size());
+            }
+        }
+
+        private int indexOf(long id) {
+            for (int i = 0; i < records.size(); i++) {
+                if (records.get(i).id == id) return i;
+            }
+            return -1;
+        }
+
+        // first position whose record is listed after the given one
+        private int insertionPoint(MedicationRecord record) {
+            int low = 0;
+            int high = records.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (records.get(middle).isBefore(record)) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        @NonNull
         @Override
-        public View newView(Context context, Cursor cursor, ViewGroup parent) {
-            return LayoutInflater.from(context).inflate(R.layout.view_list_item_journal_medication, parent, false);
+        public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            return new ViewHolder(LayoutInflater.from(parent.getContext())
+                    .inflate(R.layout.view_list_item_journal_medication, parent, false));
         }
 
         @Override
-        public void bindView(View view, Context context, Cursor cursor) {
+        public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+            MedicationRecord record = records.get(position);
 
-            TextView tvTimestamp = view.findViewById(R.id.timestamp);
-            long timestamp = cursor.getLong(cursor.getColumnIndexOrThrow("double_medication"));
-            Date date = new Date(timestamp);
-            Calendar calendar = Calendar.getInstance();
-            calendar.setTime(date);
+            String order = String.valueOf(firstNumber - position) + ")";
+            holder.number.setText(order);
 
-            // transforming timestamp to readable date format to show in dialog
-            SimpleDateFormat sdf = new SimpleDateFormat("HH:mm,  dd MMMM yyyy");
-            sdf.setTimeZone(TimeZone.getDefault());
-            String formattedDate = sdf.format(date);
-            tvTimestamp.setText(formattedDate);
+            holder.timestamp.setText(record.formattedTimestamp);
+
+            // next page is requested before the user scrolls to the end of the loaded ones
+            if (position >= records.size() - MedicationJournal.PAGE_SIZE / 4) {
+                journal.loadMore();
+            }
         }
 
         @Override
-        public View getView(int position, View convertView, ViewGroup parent) {
+        public int getItemCount() {
+            return records.size();
+        }
+
+        private class ViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
 
-            View view = super.getView(position, convertView, parent);
-            TextView number = view.findViewById(R.id.number);
-            String order = String.valueOf(total - position) + ")";
-            number.setText(order);
+            private final TextView number;
+            private final TextView timestamp;
+
+            private ViewHolder(View view) {
+                super(view);
+                number = view.findViewById(R.id.number);
+                timestamp = view.findViewById(R.id.timestamp);
+                view.setOnClickListener(this);
+            }
 
-            return view;
+            @Override
+            public void onClick(View v) {
+                int position = getAdapterPosition();
+                // pending inserts have no _id to modify yet
+                if (position != RecyclerView.NO_POSITION && records.get(position).id >= 0) {
+                    modifyRecord(records.get(position));
+                }
+            }
         }
     }
 }
@@ -0,0 +1,461 @@
+package com.aware.app.stop;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.provider.BaseColumns;
+import android.util.Log;
+import android.util.LongSparseArray;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.aware.app.stop.database.Provider;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/*
+ * Paged view of Provider.Medication_Data for the journal, newest medication first.
+ * Pages are read on a background thread with keyset paging on double_medication
+ * (and _id for equal timestamps), so opening the journal costs one page no matter
+ * how many records a patient has, and no cursor outlives its page.
+ * Rows are formatted for display on the same thread and cached by _id, so the
+ * list never formats while scrolling and a refresh only formats changed rows.
+ * Inserts, edits and deletes are shown optimistically and written on the same thread;
+ * refreshes are diffed there too, so the list only receives the changes.
+ */
+
+public class MedicationJournal {
+
+    // Delivered on the main thread. firstNumber is the journal number of the first record
+    // (records are numbered from the oldest one)
+    public interface Callback {
+        // the loaded records were re-read, diff turns the shown records of the given version into them
+        void onRefreshed(List<MedicationRecord> records, int firstNumber, boolean hasMore,
+                         DiffUtil.DiffResult diff, int version);
+
+        // the next page was loaded
+        void onPageLoaded(List<MedicationRecord> page, boolean hasMore);
+
+        // a single record was added or changed, record is null when it has been deleted
+        void onRecordChanged(long id, MedicationRecord record);
+
+        // a record that was never loaded changed, which may shift the journal numbers of the loaded ones
+        void onRefreshNeeded();
+
+        // an inserted record got its _id, record is null when the insert failed
+        void onRecordInserted(long pendingId, MedicationRecord record);
+
+        // an update or delete failed, previous is the record as it was before
+        void onMutationFailed(long id, MedicationRecord previous);
+    }
+
+    public static final int PAGE_SIZE = 50;
+
+    // readable date format of the journal rows
+    private static final String DATE_FORMAT = "HH:mm,  dd MMMM yyyy";
+
+    private static final String[] COLUMNS = new String[]{
+            Provider.Medication_Data._ID, Provider.Medication_Data.MEDICATION_TIMESTAMP
+    };
+
+    private static final String ORDER = Provider.Medication_Data.MEDICATION_TIMESTAMP + " DESC, "
+            + Provider.Medication_Data._ID + " DESC";
+
+    // records after the given one in ORDER
+    private static final String AFTER = Provider.Medication_Data.MEDICATION_TIMESTAMP + " < ? OR ("
+            + Provider.Medication_Data.MEDICATION_TIMESTAMP + " = ? AND " + Provider.Medication_Data._ID + " < ?)";
+
+    // the given record and all records after it in ORDER
+    private static final String UP_TO = Provider.Medication_Data.MEDICATION_TIMESTAMP + " < ? OR ("
+            + Provider.Medication_Data.MEDICATION_TIMESTAMP + " = ? AND " + Provider.Medication_Data._ID + " <= ?)";
+
+    // one reader thread for the journal, pages are delivered in the order they are requested
+    private static final ExecutorService reader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "stop-journal");
+        }
+    });
+
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final ContentResolver resolver;
+    private final Callback callback;
+
+    // display models by _id, only touched by the reader thread
+    private final LongSparseArray<MedicationRecord> displayCache = new LongSparseArray<>();
+    private final SimpleDateFormat sdf = new SimpleDateFormat(DATE_FORMAT);
+
+    // formats optimistic records on the main thread
+    private final SimpleDateFormat mainSdf = new SimpleDateFormat(DATE_FORMAT);
+
+    // main thread state; results of an older generation are dropped
+    private int generation;
+    private boolean loading;
+    private boolean hasMore;
+    private MedicationRecord last;
+    private long nextPendingId = -1;
+    private boolean closed;
+
+    public MedicationJournal(ContentResolver resolver, Callback callback) {
+        this.resolver = resolver;
+        this.callback = callback;
+    }
+
+    /**
+     * Re-reads the shown records (at least the first page) in one query and diffs them
+     * against what is shown, in the background
+     *
+     * @param shown copy of the records currently shown
+     * @param shownFirstNumber journal number of the first shown record
+     * @param version version of the shown records, handed back with the result
+     */
+    public void refresh(final List<MedicationRecord> shown, final int shownFirstNumber, final int version) {
+        generation++;
+        loading = true;
+        final int requested = generation;
+        final int limit = Math.max(shown.size(), PAGE_SIZE);
+
+        reader.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<MedicationRecord> records = new ArrayList<>(limit);
+                int number = 0;
+                try {
+                    queryPage(null, limit, records);
+                    if (!records.isEmpty()) {
+                        number = countUpTo(records.get(0));
+                    }
+                } catch (RuntimeException e) {
+                    Log.e(MainActivity.STOP_TAG, "Failed to load medication journal", e);
+                }
+
+                final int firstNumber = number;
+                final DiffUtil.DiffResult diff = DiffUtil.calculateDiff(
+                        new RecordDiff(shown, shownFirstNumber, records, firstNumber), true);
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (requested != generation) return;
+
+                        loading = false;
+                        hasMore = records.size() == limit;
+                        last = records.isEmpty() ? null : records.get(records.size() - 1);
+                        callback.onRefreshed(records, firstNumber, hasMore, diff, version);
+                    }
+                });
+            }
+        });
+    }
+
+    // loads the page after the last loaded record, if there is one and no page is on its way
+    public void loadMore() {
+        if (loading || !hasMore || last == null) return;
+
+        loading = true;
+        final int requested = generation;
+        final MedicationRecord after = last;
+
+        reader.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<MedicationRecord> page = new ArrayList<>(PAGE_SIZE);
+                try {
+                    queryPage(after, PAGE_SIZE, page);
+                } catch (RuntimeException e) {
+                    Log.e(MainActivity.STOP_TAG, "Failed to load medication journal", e);
+                }
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (requested != generation) return;
+
+                        loading = false;
+                        hasMore = page.size() == PAGE_SIZE;
+                        if (!page.isEmpty()) last = page.get(page.size() - 1);
+                        callback.onPageLoaded(page, hasMore);
+                    }
+                });
+            }
+        });
+    }
+
+    // _id of a Medication_Data item URI, -1 for the table URI
+    public static long idOf(Uri uri) {
+        if (uri == null || uri.getPathSegments().size() < 2) return -1;
+        try {
+            return Long.parseLong(uri.getLastPathSegment());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // reads a single record in the background, see Callback.onRecordChanged and onRefreshNeeded
+    public void loadRecord(final long id) {
+        reader.execute(new Runnable() {
+            @Override
+            public void run() {
+                // e.g. a record older than the loaded pages was deleted or edited elsewhere:
+                // only a refresh can tell how the loaded records are numbered now
+                if (displayCache.get(id) == null) {
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!closed) callback.onRefreshNeeded();
+                        }
+                    });
+                    return;
+                }
+
+                MedicationRecord found = null;
+                try {
+                    found = queryRecord(id);
+                } catch (RuntimeException e) {
+                    Log.e(MainActivity.STOP_TAG, "Failed to load medication record", e);
+                }
+
+                final MedicationRecord record = found;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!closed) callback.onRecordChanged(id, record);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Inserts a record in the background. Returns the record to show right away, with a
+     * negative pending id until Callback.onRecordInserted hands over the stored one.
+     */
+    public MedicationRecord insert(final ContentValues values) {
+        final long pendingId = nextPendingId--;
+        MedicationRecord pending = format(pendingId, values.getAsLong(Provider.Medication_Data.MEDICATION_TIMESTAMP));
+
+        reader.execute(new Runnable() {
+            @Override
+            public void run() {
+                MedicationRecord stored = null;
+                try {
+                    Uri uri = resolver.insert(Provider.Medication_Data.CONTENT_URI, values);
+                    if (uri != null) {
+                        stored = toRecord(ContentUris.parseId(uri), values.getAsLong(Provider.Medication_Data.MEDICATION_TIMESTAMP));
+                    }
+                } catch (RuntimeException e) {
+                    Log.e(MainActivity.STOP_TAG, "Failed to insert medication record", e);
+                }
+
+                final MedicationRecord record = stored;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!closed) callback.onRecordInserted(pendingId, record);
+                    }
+                });
+            }
+        });
+        return pending;
+    }
+
+    // changes the timestamp of a record in the background, returns the record to show right away
+    public MedicationRecord update(final MedicationRecord previous, final long timestamp) {
+        reader.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean updated = false;
+                try {
+                    ContentValues values = new ContentValues();
+                    values.put(Provider.Medication_Data.MEDICATION_TIMESTAMP, timestamp);
+                    updated = resolver.update(itemUri(previous.id), values, null, null) > 0;
+                    if (updated) toRecord(previous.id, timestamp);
+                } catch (RuntimeException e) {
+                    Log.e(MainActivity.STOP_TAG, "Failed to update medication record", e);
+                }
+
+                if (!updated) postFailure(previous);
+            }
+        });
+        return format(previous.id, timestamp);
+    }
+
+    // deletes a record in the background
+    public void delete(final MedicationRecord previous) {
+        reader.execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean deleted = false;
+                try {
+                    deleted = resolver.delete(itemUri(previous.id), null, null) > 0;
+                    if (deleted) displayCache.remove(previous.id);
+                } catch (RuntimeException e) {
+                    Log.e(MainActivity.STOP_TAG, "Failed to delete medication record", e);
+                }
+
+                if (!deleted) postFailure(previous);
+            }
+        });
+    }
+
+    // drops the pages and results that are still on their way, writes are finished regardless
+    public void close() {
+        closed = true;
+        generation++;
+        loading = false;
+    }
+
+    private void postFailure(final MedicationRecord previous) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!closed) callback.onMutationFailed(previous.id, previous);
+            }
+        });
+    }
+
+    // main thread, one optimistic record
+    private MedicationRecord format(long id, long timestamp) {
+        mainSdf.setTimeZone(TimeZone.getDefault());
+        return new MedicationRecord(id, timestamp, mainSdf.format(new Date(timestamp)));
+    }
+
+    // reader thread
+    private void queryPage(MedicationRecord after, int limit, List<MedicationRecord> page) {
+        Uri uri = Provider.Medication_Data.CONTENT_URI.buildUpon()
+                .appendQueryParameter(Provider.QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                .build();
+
+        Cursor cursor;
+        if (after == null) {
+            cursor = resolver.query(uri, COLUMNS, null, null, ORDER);
+        } else {
+            cursor = resolver.query(uri, COLUMNS, AFTER, keyset(after), ORDER);
+        }
+        if (cursor == null) return;
+
+        try {
+            int idColumn = cursor.getColumnIndexOrThrow(Provider.Medication_Data._ID);
+            int timestampColumn = cursor.getColumnIndexOrThrow(Provider.Medication_Data.MEDICATION_TIMESTAMP);
+            while (cursor.moveToNext()) {
+                page.add(toRecord(cursor.getLong(idColumn), cursor.getLong(timestampColumn)));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // Provider serves item URIs by primary key with cached statements
+    private static Uri itemUri(long id) {
+        return ContentUris.withAppendedId(Provider.Medication_Data.CONTENT_URI, id);
+    }
+
+    // reader thread, null when the record doesn't exist (anymore)
+    private MedicationRecord queryRecord(long id) {
+        Cursor cursor = resolver.query(itemUri(id), COLUMNS, null, null, null);
+        if (cursor == null) return null;
+
+        try {
+            if (cursor.moveToFirst()) {
+                return toRecord(id, cursor.getLong(cursor.getColumnIndexOrThrow(Provider.Medication_Data.MEDICATION_TIMESTAMP)));
+            }
+            displayCache.remove(id);
+            return null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    // reader thread, formats a row only when it is new or its timestamp changed
+    private MedicationRecord toRecord(long id, long timestamp) {
+        MedicationRecord cached = displayCache.get(id);
+        if (cached != null && cached.timestamp == timestamp) return cached;
+
+        // transforming timestamp to readable date format
+        sdf.setTimeZone(TimeZone.getDefault());
+        MedicationRecord record = new MedicationRecord(id, timestamp, sdf.format(new Date(timestamp)));
+        displayCache.put(id, record);
+        return record;
+    }
+
+    // number of records up to the given one, which is its number in the journal
+    private int countUpTo(MedicationRecord record) {
+        Cursor cursor = resolver.query(Provider.Medication_Data.CONTENT_URI,
+                new String[]{"count(*) AS " + BaseColumns._COUNT}, UP_TO, keyset(record), null);
+        if (cursor == null) return 0;
+
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static String[] keyset(MedicationRecord record) {
+        String timestamp = String.valueOf(record.timestamp);
+        return new String[]{timestamp, timestamp, String.valueOf(record.id)};
+    }
+
+    // compares shown and re-read records, a row also changes when its journal number does
+    private static class RecordDiff extends DiffUtil.Callback {
+
+        private final List<MedicationRecord> oldRecords;
+        private final int oldFirstNumber;
+        private final List<MedicationRecord> newRecords;
+        private final int newFirstNumber;
+
+        private RecordDiff(List<MedicationRecord> oldRecords, int oldFirstNumber,
+                           List<MedicationRecord> newRecords, int newFirstNumber) {
+            this.oldRecords = oldRecords;
+            this.oldFirstNumber = oldFirstNumber;
+            this.newRecords = newRecords;
+            this.newFirstNumber = newFirstNumber;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldRecords.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newRecords.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            MedicationRecord oldRecord = oldRecords.get(oldPosition);
+            MedicationRecord newRecord = newRecords.get(newPosition);
+            // a pending insert is the stored record with the same timestamp
+            return oldRecord.id == newRecord.id
+                    || (oldRecord.id < 0 && oldRecord.timestamp == newRecord.timestamp);
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            MedicationRecord oldRecord = oldRecords.get(oldPosition);
+            MedicationRecord newRecord = newRecords.get(newPosition);
+            return oldRecord.formattedTimestamp.equals(newRecord.formattedTimestamp)
+                    && oldFirstNumber - oldPosition == newFirstNumber - newPosition;
+        }
+    }
+}
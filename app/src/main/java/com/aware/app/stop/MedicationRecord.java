@@ -0,0 +1,28 @@
+package com.aware.app.stop;
+
+/*
+ * Display model of one medication journal row, formatted off the main thread
+ */
+
+public class MedicationRecord {
+
+    // Provider.Medication_Data._ID
+    public final long id;
+
+    // Provider.Medication_Data.MEDICATION_TIMESTAMP, when the medication has been taken
+    public final long timestamp;
+
+    // timestamp as shown in the journal
+    public final String formattedTimestamp;
+
+    public MedicationRecord(long id, long timestamp, String formattedTimestamp) {
+        this.id = id;
+        this.timestamp = timestamp;
+        this.formattedTimestamp = formattedTimestamp;
+    }
+
+    // true when this record is listed before the other one in the journal, newest first
+    public boolean isBefore(MedicationRecord other) {
+        return timestamp != other.timestamp ? timestamp > other.timestamp : id > other.id;
+    }
+}
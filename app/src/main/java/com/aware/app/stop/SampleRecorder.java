@@ -0,0 +1,156 @@
+package com.aware.app.stop;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+ * Preallocated column storage for the samples of one sensor stream.
+ * Recording a sample only writes into primitive arrays, so the sensor
+ * observers do not allocate while the game is running. Buffers are reused
+ * between games and serialized once, when the game is over.
+ */
+
+public class SampleRecorder {
+
+    // highest sensor rate we expect from the study devices, used to size the buffers
+    public static final int EXPECTED_RATE_HZ = 200;
+
+    private long[] timestamps;
+    private String[] deviceIds;
+    private double[] values0;
+    private double[] values1;
+    private double[] values2;
+    private int[] accuracies;
+    private String[] labels;
+    private int size;
+
+    // sized for the default 10 seconds game
+    public SampleRecorder() {
+        this(capacityFor(10000));
+    }
+
+    public SampleRecorder(int capacity) {
+        allocate(Math.max(capacity, 1));
+    }
+
+    // buffer capacity for a game of the given length in milliseconds (with one second of headroom)
+    public static int capacityFor(int gameTime) {
+        return (gameTime / 1000 + 1) * EXPECTED_RATE_HZ;
+    }
+
+    // makes sure the buffers can hold the given number of samples without growing
+    public void ensureCapacity(int capacity) {
+        if (capacity > timestamps.length) {
+            grow(capacity);
+        }
+    }
+
+    public void record(long timestamp, String deviceId, double value0, double value1, double value2,
+                       int accuracy, String label) {
+        // stream delivered faster than expected: grow instead of dropping samples
+        if (size == timestamps.length) {
+            grow(size * 2);
+        }
+
+        timestamps[size] = timestamp;
+        deviceIds[size] = deviceId;
+        values0[size] = value0;
+        values1[size] = value1;
+        values2[size] = value2;
+        accuracies[size] = accuracy;
+        labels[size] = label;
+        size++;
+    }
+
+    // appends the samples [from, to) of another recorder
+    public void append(SampleRecorder source, int from, int to) {
+        int count = to - from;
+        ensureCapacity(size + count);
+        System.arraycopy(source.timestamps, from, timestamps, size, count);
+        System.arraycopy(source.deviceIds, from, deviceIds, size, count);
+        System.arraycopy(source.values0, from, values0, size, count);
+        System.arraycopy(source.values1, from, values1, size, count);
+        System.arraycopy(source.values2, from, values2, size, count);
+        System.arraycopy(source.accuracies, from, accuracies, size, count);
+        System.arraycopy(source.labels, from, labels, size, count);
+        size += count;
+    }
+
+    public void clear() {
+        // drop String references so they can be collected, primitives are just overwritten
+        Arrays.fill(deviceIds, 0, size, null);
+        Arrays.fill(labels, 0, size, null);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return timestamps.length;
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public String getDeviceId(int index) {
+        return deviceIds[index];
+    }
+
+    public double getValue0(int index) {
+        return values0[index];
+    }
+
+    public double getValue1(int index) {
+        return values1[index];
+    }
+
+    public double getValue2(int index) {
+        return values2[index];
+    }
+
+    public int getAccuracy(int index) {
+        return accuracies[index];
+    }
+
+    public String getLabel(int index) {
+        return labels[index];
+    }
+
+    // writes one JSON object per sample, in the same shape Gson produced for a Sample object
+    public void writeSample(JsonWriter writer, int index) throws IOException {
+        writer.beginObject();
+        writer.name("timestamp").value(timestamps[index]);
+        writer.name("device_id").value(deviceIds[index]);
+        writer.name("double_values_0").value(values0[index]);
+        writer.name("double_values_1").value(values1[index]);
+        writer.name("double_values_2").value(values2[index]);
+        writer.name("accuracy").value(accuracies[index]);
+        writer.name("label").value(labels[index]);
+        writer.endObject();
+    }
+
+    private void allocate(int capacity) {
+        timestamps = new long[capacity];
+        deviceIds = new String[capacity];
+        values0 = new double[capacity];
+        values1 = new double[capacity];
+        values2 = new double[capacity];
+        accuracies = new int[capacity];
+        labels = new String[capacity];
+    }
+
+    private void grow(int capacity) {
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        deviceIds = Arrays.copyOf(deviceIds, capacity);
+        values0 = Arrays.copyOf(values0, capacity);
+        values1 = Arrays.copyOf(values1, capacity);
+        values2 = Arrays.copyOf(values2, capacity);
+        accuracies = Arrays.copyOf(accuracies, capacity);
+        labels = Arrays.copyOf(labels, capacity);
+    }
+}
@@ -0,0 +1,65 @@
+package com.aware.app.stop;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Start/stop barrier between the game timer and the sensor threads.
+ * Recorders wrap each sample in enter()/exit(); close() returns only after
+ * every sample that passed the gate is fully recorded, so nothing is written
+ * into a session once the timer has finished and it is handed to the writer.
+ * The last recorder to leave a closed gate wakes close() up; recording one
+ * sample takes microseconds, so the wait is not bounded.
+ */
+
+public class SamplingGate {
+
+    private volatile boolean open;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public void open() {
+        open = true;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    // returns false when the sample should be dropped, exit() must follow a true result
+    public boolean enter() {
+        if (!open) return false;
+
+        inFlight.incrementAndGet();
+        if (!open) {
+            // closed in between, close() may already be waiting for us
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public void exit() {
+        if (inFlight.decrementAndGet() == 0 && !open) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    // closes the gate and waits for the samples being recorded
+    public void close() {
+        open = false;
+
+        boolean interrupted = false;
+        synchronized (this) {
+            while (inFlight.get() != 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // the session must not be handed over while a sample is still being written
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+}
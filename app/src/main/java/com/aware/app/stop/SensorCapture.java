@@ -0,0 +1,147 @@
+package com.aware.app.stop;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Game capture backend reading the motion sensors straight from SensorManager on a dedicated
+ * thread, bypassing the AWARE sensor services. Events arrive as raw floats with an explicit
+ * sampling period; the streams that do not drive the ball are batched in hardware.
+ */
+
+public class SensorCapture implements SensorEventListener {
+
+    // Receives the samples of all streams on the capture thread, latency from the sensor event to the callback
+    public interface Listener {
+        void onSensorSample(int stream, long timestamp, float value0, float value1, float value2, int accuracy,
+                            long latencyNanos);
+    }
+
+    // same 50 Hz the AWARE accelerometer is configured with in MainActivity
+    public static final int SAMPLING_PERIOD_US = 20000;
+
+    // recorded-only streams may be delivered in batches, the accelerometer moves the ball and never waits
+    public static final int MAX_REPORT_LATENCY_US = 200000;
+
+    private final SensorManager sensorManager;
+    private final Listener listener;
+
+    private Sensor accelerometer;
+    private Sensor linearAccelerometer;
+    private Sensor gyroscope;
+    private Sensor rotation;
+
+    private HandlerThread thread;
+    private Handler handler;
+
+    // CPU time the capture thread used during the last run, -1 when unknown
+    private volatile long cpuTimeNanos = -1;
+
+    // difference between wall clock and elapsed realtime, to convert event timestamps
+    private long bootTimeMillis;
+
+    public SensorCapture(Context context, Listener listener) {
+        this.sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        this.listener = listener;
+    }
+
+    // true when the device has an accelerometer, the stream the game can't run without
+    public boolean isAvailable() {
+        return sensorManager != null && sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER) != null;
+    }
+
+    public void start() {
+        if (thread != null) return;
+
+        thread = new HandlerThread("stop-sensors", Process.THREAD_PRIORITY_DISPLAY);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        cpuTimeNanos = -1;
+
+        bootTimeMillis = System.currentTimeMillis() - SystemClock.elapsedRealtime();
+
+        accelerometer = register(Sensor.TYPE_ACCELEROMETER, 0, handler);
+        linearAccelerometer = register(Sensor.TYPE_LINEAR_ACCELERATION, MAX_REPORT_LATENCY_US, handler);
+        gyroscope = register(Sensor.TYPE_GYROSCOPE, MAX_REPORT_LATENCY_US, handler);
+        rotation = register(Sensor.TYPE_ROTATION_VECTOR, MAX_REPORT_LATENCY_US, handler);
+    }
+
+    public void stop() {
+        if (thread == null) return;
+
+        sensorManager.unregisterListener(this);
+
+        // the capture thread reads its own CPU time before quitting
+        final CountDownLatch measured = new CountDownLatch(1);
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                cpuTimeNanos = Debug.threadCpuTimeNanos();
+                measured.countDown();
+            }
+        });
+        try {
+            measured.await(100, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        thread.quitSafely();
+        thread = null;
+        handler = null;
+        accelerometer = null;
+        linearAccelerometer = null;
+        gyroscope = null;
+        rotation = null;
+    }
+
+    public long getCpuTimeNanos() {
+        return cpuTimeNanos;
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        int stream;
+        if (event.sensor == accelerometer) {
+            stream = GameChunker.STREAM_ACCELEROMETER;
+        } else if (event.sensor == linearAccelerometer) {
+            stream = GameChunker.STREAM_LINEAR_ACCELEROMETER;
+        } else if (event.sensor == gyroscope) {
+            stream = GameChunker.STREAM_GYROSCOPE;
+        } else if (event.sensor == rotation) {
+            stream = GameChunker.STREAM_ROTATION;
+        } else {
+            return;
+        }
+
+        // event timestamps are nanoseconds of elapsed realtime, samples are stored in wall clock milliseconds
+        long timestamp = bootTimeMillis + event.timestamp / 1000000L;
+        long latencyNanos = SystemClock.elapsedRealtimeNanos() - event.timestamp;
+        listener.onSensorSample(stream, timestamp, event.values[0], event.values[1], event.values[2], event.accuracy,
+                latencyNanos);
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        // accuracy is delivered with every event
+    }
+
+    private Sensor register(int type, int maxReportLatencyUs, Handler handler) {
+        Sensor sensor = sensorManager.getDefaultSensor(type);
+        if (sensor != null) {
+            sensorManager.registerListener(this, sensor, SAMPLING_PERIOD_US, maxReportLatencyUs, handler);
+        }
+        return sensor;
+    }
+}
@@ -0,0 +1,82 @@
+package com.aware.app.stop;
+
+import android.content.ContentValues;
+import android.os.Build;
+import android.os.Debug;
+import android.os.SystemClock;
+
+import com.aware.app.stop.database.Provider;
+
+/*
+ * Resources used by the app during one game, stored in Provider.Perf_Session.
+ * GC and allocation counters are process wide ART runtime stats (API 23+),
+ * read once when the game starts and once when it stops; the heap is sampled
+ * from the game timer, so profiling adds nothing to the sensor or render path.
+ */
+
+public class SessionProfiler {
+
+    private long startRealtime;
+    private long startGcCount;
+    private long startGcTime;
+    private long startAllocated;
+    private long peakHeap;
+
+    public void start() {
+        startRealtime = SystemClock.elapsedRealtime();
+        startGcCount = runtimeStat("art.gc.gc-count");
+        startGcTime = runtimeStat("art.gc.gc-time");
+        startAllocated = runtimeStat("art.gc.bytes-allocated");
+        peakHeap = 0;
+        sampleHeap();
+    }
+
+    // called about once a second while the game is running
+    public void sampleHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        if (used > peakHeap) peakHeap = used;
+    }
+
+    /**
+     * Ends the measurement and returns the Perf_Session row of the game (without device_id)
+     *
+     * @param sensorCpuTimeNanos CPU time of the sensor callback thread, -1 when unknown
+     */
+    public ContentValues stop(GameSession session, String sensorBackend, long sensorCpuTimeNanos) {
+        sampleHeap();
+
+        ContentValues values = new ContentValues();
+        values.put(Provider.Perf_Session.TIMESTAMP, System.currentTimeMillis());
+        values.put(Provider.Perf_Session.GAME_ID, session.gameId);
+        values.put(Provider.Perf_Session.SENSOR_BACKEND, sensorBackend);
+        values.put(Provider.Perf_Session.DURATION, SystemClock.elapsedRealtime() - startRealtime);
+        values.put(Provider.Perf_Session.GC_COUNT, delta(runtimeStat("art.gc.gc-count"), startGcCount));
+        values.put(Provider.Perf_Session.GC_TIME, delta(runtimeStat("art.gc.gc-time"), startGcTime));
+        values.put(Provider.Perf_Session.ALLOCATED_BYTES, delta(runtimeStat("art.gc.bytes-allocated"), startAllocated));
+        values.put(Provider.Perf_Session.PEAK_HEAP, peakHeap);
+        values.put(Provider.Perf_Session.BUFFER_SAMPLES, session.ball.size() + session.accelerometer.size()
+                + session.linearAccelerometer.size() + session.gyroscope.size() + session.rotation.size());
+        values.put(Provider.Perf_Session.BUFFER_CAPACITY, session.ball.capacity() + session.accelerometer.capacity()
+                + session.linearAccelerometer.capacity() + session.gyroscope.capacity() + session.rotation.capacity());
+        values.put(Provider.Perf_Session.SENSOR_CPU_TIME, sensorCpuTimeNanos >= 0 ? sensorCpuTimeNanos / 1000000L : -1);
+        return values;
+    }
+
+    private static long delta(long end, long start) {
+        return (end < 0 || start < 0) ? -1 : end - start;
+    }
+
+    // -1 when the stat is not available on this device
+    private static long runtimeStat(String name) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) return -1;
+
+        String value = Debug.getRuntimeStat(name);
+        if (value == null) return -1;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
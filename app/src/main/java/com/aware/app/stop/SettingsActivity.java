@@ -9,6 +9,7 @@ import android.content.SharedPreferences;
 import android.content.res.Configuration;
 import android.os.Build;
 import android.os.Bundle;
+import android.preference.ListPreference;
 import android.preference.Preference;
 import android.preference.PreferenceFragment;
 import android.preference.PreferenceManager;
@@ -28,7 +29,14 @@ public class SettingsActivity extends AppCompatPreferenceActivity {
         @Override
         public boolean onPreferenceChange(Preference preference, Object value) {
             String stringValue = value.toString();
-            preference.setSummary(stringValue);
+            if (preference instanceof ListPreference) {
+                // show the entry label instead of the stored value
+                ListPreference listPreference = (ListPreference) preference;
+                int index = listPreference.findIndexOfValue(stringValue);
+                preference.setSummary(index >= 0 ? listPreference.getEntries()[index] : null);
+            } else {
+                preference.setSummary(stringValue);
+            }
             return true;
         }
     };
@@ -135,6 +143,8 @@ public class SettingsActivity extends AppCompatPreferenceActivity {
             bindPreferenceSummaryToValue(findPreference(getString(R.string.key_ball_size)));
             bindPreferenceSummaryToValue(findPreference(getString(R.string.key_sensitivity)));
             bindPreferenceSummaryToValue(findPreference(getString(R.string.key_game_time)));
+            bindPreferenceSummaryToValue(findPreference(getString(R.string.key_game_data_format)));
+            bindPreferenceSummaryToValue(findPreference(getString(R.string.key_sensor_backend)));
 
             Preference buttonReset = findPreference(getString(R.string.key_game_reset_default));
             buttonReset.setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
@@ -146,11 +156,15 @@ public class SettingsActivity extends AppCompatPreferenceActivity {
                     editor.putString(getActivity().getApplicationContext().getString(R.string.key_ball_size), "150");
                     editor.putString(getActivity().getApplicationContext().getString(R.string.key_sensitivity), "3");
                     editor.putString(getActivity().getApplicationContext().getString(R.string.key_game_time), "10");
+                    editor.putString(getActivity().getApplicationContext().getString(R.string.key_game_data_format), "1");
+                    editor.putString(getActivity().getApplicationContext().getString(R.string.key_sensor_backend), "aware");
                     editor.commit();
 
                     bindPreferenceSummaryToValue(findPreference(getString(R.string.key_ball_size)));
                     bindPreferenceSummaryToValue(findPreference(getString(R.string.key_sensitivity)));
                     bindPreferenceSummaryToValue(findPreference(getString(R.string.key_game_time)));
+                    bindPreferenceSummaryToValue(findPreference(getString(R.string.key_game_data_format)));
+                    bindPreferenceSummaryToValue(findPreference(getString(R.string.key_sensor_backend)));
                     Toast.makeText(getActivity(), R.string.settings_default_applied, Toast.LENGTH_SHORT).show();
 
                     return true;
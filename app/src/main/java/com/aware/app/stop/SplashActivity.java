@@ -22,14 +22,22 @@ public class SplashActivity extends AppCompatActivity {
 
     @Override
     protected void onCreate(@Nullable Bundle savedInstanceState) {
+        StartupTrace.start(true);
         super.onCreate(savedInstanceState);
+        StartupTrace.mark(StartupTrace.SPLASH_CREATED);
+
+        StartupTrace.begin("crashlytics");
         Fabric.with(this, new Crashlytics());
+        StartupTrace.end();
+        StartupTrace.mark(StartupTrace.CRASHLYTICS_READY);
     }
 
     @Override
     protected void onResume() {
         super.onResume();
 
+        StartupTrace.begin("permissions");
+
         // List of required permission
         ArrayList<String> REQUIRED_PERMISSIONS = new ArrayList<>();
         REQUIRED_PERMISSIONS.add(Manifest.permission.WRITE_EXTERNAL_STORAGE);
@@ -50,12 +58,17 @@ public class SplashActivity extends AppCompatActivity {
 
         // flag to check if the consent has been read by the user
         boolean consentRead = getSharedPreferences("consentPref", MODE_PRIVATE).getBoolean("consentRead", false);
+        StartupTrace.end();
+        StartupTrace.mark(StartupTrace.PERMISSIONS_CHECKED);
 
         // 1st: Check for permissions
         if (permissions_ok) {
 
+            StartupTrace.begin("aware_start");
             Intent aware = new Intent(getApplicationContext(), Aware.class);
             startService(aware);
+            StartupTrace.end();
+            StartupTrace.mark(StartupTrace.AWARE_STARTED);
 
             // 2nd: Check for consent was read
             if (consentRead) {
@@ -67,7 +80,8 @@ public class SplashActivity extends AppCompatActivity {
 
             } else {
 
-                // Open ConsentActivity if consent was not accepted yet
+                // Open ConsentActivity if consent was not accepted yet; the launch ends here
+                StartupTrace.record(this);
                 Intent consentIntent = new Intent(this, ConsentActivity.class);
                 startActivity(consentIntent);
                 finish();
@@ -0,0 +1,163 @@
+package com.aware.app.stop;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Process;
+import android.util.Log;
+
+import com.aware.Aware;
+import com.aware.Aware_Preferences;
+import com.aware.app.stop.database.Provider;
+import com.aware.providers.Aware_Provider;
+import com.aware.utils.Scheduler;
+
+import org.json.JSONException;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Startup work of MainActivity that the first frame doesn't need: the consent
+ * cross-check, logging the opened notification and registering the notification
+ * schedules. Started once the first frame is drawn; the independent steps run in
+ * parallel on background threads. Settings the game depends on are applied in onCreate.
+ */
+
+public class StartupInitializer {
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    // independent steps run side by side, below the priority of the UI
+    private static final ExecutorService initializer = Executors.newFixedThreadPool(2, new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "stop-startup-" + threadCount.incrementAndGet());
+        }
+    });
+
+    private final Context context;
+
+    public StartupInitializer(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    // runs other deferred startup work, e.g. storing the startup trace
+    static void execute(Runnable task) {
+        initializer.execute(task);
+    }
+
+    /**
+     * Starts the deferred startup steps in the background
+     *
+     * @param notificationEvent trigger event of the notification MainActivity was opened from, may be null
+     */
+    public void start(final String notificationEvent) {
+        initializer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    scheduleNotification();
+                } catch (RuntimeException e) {
+                    Log.e(MainActivity.STOP_TAG, "Failed to register notification schedules", e);
+                }
+            }
+        });
+
+        initializer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    syncConsent();
+                    if (notificationEvent != null) logNotificationOpened(notificationEvent);
+                } catch (RuntimeException e) {
+                    Log.e(MainActivity.STOP_TAG, "Failed to update startup records", e);
+                }
+            }
+        });
+    }
+
+    // Double checking if the consent data is synced
+    private void syncConsent() {
+        Cursor cursorJoined = context.getContentResolver().query(Aware_Provider.Aware_Studies.CONTENT_URI,
+                new String[]{Aware_Provider.Aware_Studies.STUDY_JOINED}, null, null, null);
+        Cursor cursorConsent = context.getContentResolver().query(Provider.Consent_Data.CONTENT_URI,
+                new String[]{Provider.Consent_Data.TIMESTAMP}, null, null, null);
+
+        try {
+            if (cursorJoined != null && cursorJoined.moveToFirst() && cursorConsent != null && cursorConsent.moveToFirst()) {
+                double joined = cursorJoined.getDouble(cursorJoined.getColumnIndexOrThrow(Aware_Provider.Aware_Studies.STUDY_JOINED));
+                double consent = cursorConsent.getDouble(cursorConsent.getColumnIndexOrThrow(Provider.Consent_Data.TIMESTAMP));
+
+                if (consent < joined) {
+                    ContentValues values = new ContentValues();
+                    values.put(Provider.Consent_Data.TIMESTAMP, joined);
+                    context.getContentResolver().update(Provider.Consent_Data.CONTENT_URI, values, null, null);
+                }
+            }
+        } finally {
+            if (cursorJoined != null) cursorJoined.close();
+            if (cursorConsent != null) cursorConsent.close();
+        }
+    }
+
+    // Insert notification opened event to db
+    private void logNotificationOpened(String notificationEvent) {
+        ContentValues values = new ContentValues();
+        values.put(Provider.Notification_Data.TIMESTAMP, System.currentTimeMillis());
+        values.put(Provider.Notification_Data.DEVICE_ID, Aware.getSetting(context, Aware_Preferences.DEVICE_ID));
+        values.put(Provider.Notification_Data.EVENT, notificationEvent + MainActivity.NOTIFICATION_EVENT_OPENED);
+        context.getContentResolver().insert(Provider.Notification_Data.CONTENT_URI, values);
+    }
+
+    // Notification scheduler: four times per day, the scheduler is started once for all new schedules
+    private void scheduleNotification() {
+        boolean saved = false;
+        try {
+            // Morning notification 8:00 - 11:59
+            saved |= saveSchedule(R.string.notification_game_morning, MainActivity.ACTION_STOP_FINGERPRINT, 8, 11);
+
+            // Noon notification 12:00 - 14:59
+            saved |= saveSchedule(R.string.notification_game_noon, MainActivity.ACTION_STOP_FINGERPRINT, 12, 14);
+
+            // Afternoon notification 15:00 - 18:59
+            saved |= saveSchedule(R.string.notification_game_afternoon, MainActivity.ACTION_STOP_FINGERPRINT, 15, 18);
+
+            // Evening notification 19:00 - 21:59
+            saved |= saveSchedule(R.string.notification_game_evening, MainActivity.ACTION_STOP_FINGERPRINT, 19, 21);
+
+            // Survey notification 10:00 - 11:00
+            saved |= saveSchedule(R.string.notification_survey, MainActivity.ACTION_STOP_SURVEY, 10, 10);
+
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
+
+        if (saved) Aware.startScheduler(context);
+    }
+
+    // saves the schedule unless it already exists, returns true when it was saved
+    private boolean saveSchedule(int nameId, String action, int firstHour, int lastHour) throws JSONException {
+        String name = context.getString(nameId);
+        if (Scheduler.getSchedule(context, name) != null) return false;
+
+        Scheduler.Schedule schedule = new Scheduler.Schedule(name);
+        schedule.addHour(firstHour);
+        if (lastHour != firstHour) schedule.addHour(lastHour);
+        schedule.random(1, 0)
+                .setActionType(Scheduler.ACTION_TYPE_BROADCAST)
+                .setActionIntentAction(action)
+                .addActionExtra(MainActivity.NOTIFICATION_TRIGGER_EVENT, name);
+
+        Scheduler.saveSchedule(context, schedule);
+        return true;
+    }
+}
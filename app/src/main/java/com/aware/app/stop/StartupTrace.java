@@ -0,0 +1,124 @@
+package com.aware.app.stop;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import com.aware.Aware;
+import com.aware.Aware_Preferences;
+import com.aware.app.stop.database.Provider;
+
+import java.util.Arrays;
+
+/*
+ * Startup phases of one launch, from SplashActivity (Crashlytics, permission check,
+ * starting the AWARE service) through MainActivity to the first GameFragment frame.
+ * Each phase is a named systrace section and a timestamp relative to the launch start;
+ * every launch, cold or warm, is stored as one Provider.Startup_Trace row once the main
+ * screen has drawn its first frame, or when it leaves the splash screen for the consent.
+ * Only touched on the main thread.
+ */
+
+public class StartupTrace {
+
+    // Phases in launch order, see Provider.Startup_Trace for their meaning
+    public static final int SPLASH_CREATED = 0;
+    public static final int CRASHLYTICS_READY = 1;
+    public static final int PERMISSIONS_CHECKED = 2;
+    public static final int AWARE_STARTED = 3;
+    public static final int MAIN_CREATED = 4;
+    public static final int MAIN_INFLATED = 5;
+    public static final int MAIN_FIRST_FRAME = 6;
+    public static final int GAME_FIRST_FRAME = 7;
+
+    private static final String[] COLUMNS = {
+            Provider.Startup_Trace.SPLASH_CREATED, Provider.Startup_Trace.CRASHLYTICS_READY,
+            Provider.Startup_Trace.PERMISSIONS_CHECKED, Provider.Startup_Trace.AWARE_STARTED,
+            Provider.Startup_Trace.MAIN_CREATED, Provider.Startup_Trace.MAIN_INFLATED,
+            Provider.Startup_Trace.MAIN_FIRST_FRAME, Provider.Startup_Trace.GAME_FIRST_FRAME
+    };
+
+    // longest time from the process start to the first activity that counts as a cold start
+    private static final long COLD_START_WINDOW_MILLIS = 10000;
+
+    // uptime of the phases, 0 when not reached
+    private static final long[] phases = new long[COLUMNS.length];
+
+    // uptime the phases are measured from, 0 until the first launch is started
+    private static long launchStart;
+    private static boolean cold;
+    private static boolean recorded;
+
+    // only the first launch of a process can be a cold one
+    private static boolean launched;
+
+    // called first thing by the activity that starts a launch; joins the launch in progress,
+    // e.g. MainActivity opened by SplashActivity, otherwise a new launch starts
+    public static void start(boolean fromSplash) {
+        if (launchStart != 0 && !recorded) return;
+
+        // the process start is known from Android 7.0, otherwise the launch starts here;
+        // a process started earlier for a broadcast or service is a warm launch
+        long now = SystemClock.uptimeMillis();
+        boolean processStarted = !launched && Build.VERSION.SDK_INT >= Build.VERSION_CODES.N
+                && now - Process.getStartUptimeMillis() < COLD_START_WINDOW_MILLIS;
+        launchStart = processStarted ? Process.getStartUptimeMillis() : now;
+        cold = fromSplash && !launched && (processStarted || Build.VERSION.SDK_INT < Build.VERSION_CODES.N);
+        launched = true;
+        recorded = false;
+        Arrays.fill(phases, 0);
+    }
+
+    // opens a systrace section, closed by end() on the same thread
+    public static void begin(String section) {
+        Trace.beginSection("stop:" + section);
+    }
+
+    public static void end() {
+        Trace.endSection();
+    }
+
+    // first time the phase is reached in this launch
+    public static void mark(int phase) {
+        if (launchStart == 0 || recorded || phases[phase] != 0) return;
+        phases[phase] = SystemClock.uptimeMillis();
+    }
+
+    // milliseconds from the launch start to the phase, -1 when not reached
+    public static long elapsed(int phase) {
+        return phases[phase] == 0 ? -1 : phases[phase] - launchStart;
+    }
+
+    // stores the phases the launch went through in the background and ends it
+    public static void record(Context context) {
+        if (launchStart == 0 || recorded) return;
+        recorded = true;
+
+        final Context appContext = context.getApplicationContext();
+        final ContentValues values = new ContentValues();
+        values.put(Provider.Startup_Trace.TIMESTAMP, System.currentTimeMillis());
+        values.put(Provider.Startup_Trace.APP_VERSION, BuildConfig.VERSION_NAME);
+        values.put(Provider.Startup_Trace.APP_VERSION_CODE, BuildConfig.VERSION_CODE);
+        values.put(Provider.Startup_Trace.API_LEVEL, Build.VERSION.SDK_INT);
+        values.put(Provider.Startup_Trace.COLD_START, cold);
+        for (int phase = 0; phase < COLUMNS.length; phase++) {
+            values.put(COLUMNS[phase], elapsed(phase));
+        }
+
+        StartupInitializer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    values.put(Provider.Startup_Trace.DEVICE_ID, Aware.getSetting(appContext, Aware_Preferences.DEVICE_ID));
+                    appContext.getContentResolver().insert(Provider.Startup_Trace.CONTENT_URI, values);
+                } catch (RuntimeException e) {
+                    Log.e(MainActivity.STOP_TAG, "Failed to store startup trace", e);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,217 @@
+package com.aware.app.stop;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/*
+ * Streaming tremor features of one motion sensor. Samples are collected into fixed-size
+ * windows with 50% overlap; for each full window the magnitude signal is detrended and
+ * Goertzel filters measure its power between 1 and 12 Hz. Per window we keep the RMS,
+ * the tremor band power (3-7 Hz), its share of the total power and the dominant frequency.
+ */
+
+public class TremorFeatures {
+
+    public static final int WINDOW_SAMPLES = 256;
+    public static final int HOP_SAMPLES = WINDOW_SAMPLES / 2;
+
+    public static final double BAND_LOW_HZ = 3.0;
+    public static final double BAND_HIGH_HZ = 7.0;
+    private static final double MIN_HZ = 1.0;
+    private static final double MAX_HZ = 12.0;
+    private static final double STEP_HZ = 0.25;
+    private static final int BINS = (int) ((MAX_HZ - MIN_HZ) / STEP_HZ) + 1;
+
+    // current window
+    private final long[] windowTimestamps = new long[WINDOW_SAMPLES];
+    private final double[] windowValues = new double[WINDOW_SAMPLES];
+    private int windowSize;
+
+    // features of completed windows
+    private long[] startTimestamps;
+    private long[] endTimestamps;
+    private float[] sampleRates;
+    private float[] rms;
+    private float[] bandPower;
+    private float[] bandRatio;
+    private float[] dominantFrequency;
+    private int size;
+
+    public TremorFeatures() {
+        this(16);
+    }
+
+    public TremorFeatures(int capacity) {
+        capacity = Math.max(capacity, 1);
+        startTimestamps = new long[capacity];
+        endTimestamps = new long[capacity];
+        sampleRates = new float[capacity];
+        rms = new float[capacity];
+        bandPower = new float[capacity];
+        bandRatio = new float[capacity];
+        dominantFrequency = new float[capacity];
+    }
+
+    // number of windows produced by the given number of samples
+    public static int capacityFor(int samples) {
+        return Math.max(1, (samples - WINDOW_SAMPLES) / HOP_SAMPLES + 1);
+    }
+
+    public void ensureCapacity(int capacity) {
+        if (capacity > startTimestamps.length) {
+            grow(capacity);
+        }
+    }
+
+    // adds one sample (timestamp in milliseconds), computing the features of a window once it is full
+    public void add(long timestamp, double x, double y, double z) {
+        windowTimestamps[windowSize] = timestamp;
+        windowValues[windowSize] = Math.sqrt(x * x + y * y + z * z);
+        windowSize++;
+
+        if (windowSize == WINDOW_SAMPLES) {
+            computeWindow();
+
+            // keep the second half as the start of the next window
+            System.arraycopy(windowTimestamps, HOP_SAMPLES, windowTimestamps, 0, WINDOW_SAMPLES - HOP_SAMPLES);
+            System.arraycopy(windowValues, HOP_SAMPLES, windowValues, 0, WINDOW_SAMPLES - HOP_SAMPLES);
+            windowSize = WINDOW_SAMPLES - HOP_SAMPLES;
+        }
+    }
+
+    // records the features of an already computed window
+    public void addWindow(long start, long end, float sampleRate, float rms, float bandPower,
+                          float bandRatio, float dominantFrequency) {
+        if (size == startTimestamps.length) {
+            grow(size * 2);
+        }
+        startTimestamps[size] = start;
+        endTimestamps[size] = end;
+        sampleRates[size] = sampleRate;
+        this.rms[size] = rms;
+        this.bandPower[size] = bandPower;
+        this.bandRatio[size] = bandRatio;
+        this.dominantFrequency[size] = dominantFrequency;
+        size++;
+    }
+
+    public void clear() {
+        windowSize = 0;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getStartTimestamp(int index) {
+        return startTimestamps[index];
+    }
+
+    public long getEndTimestamp(int index) {
+        return endTimestamps[index];
+    }
+
+    public float getSampleRate(int index) {
+        return sampleRates[index];
+    }
+
+    public float getRms(int index) {
+        return rms[index];
+    }
+
+    public float getBandPower(int index) {
+        return bandPower[index];
+    }
+
+    public float getBandRatio(int index) {
+        return bandRatio[index];
+    }
+
+    public float getDominantFrequency(int index) {
+        return dominantFrequency[index];
+    }
+
+    public void writeJson(JsonWriter writer) throws IOException {
+        writer.beginArray();
+        for (int i = 0; i < size; i++) {
+            writer.beginObject();
+            writer.name("timestamp_start").value(startTimestamps[i]);
+            writer.name("timestamp_end").value(endTimestamps[i]);
+            writer.name("sample_rate").value(Float.valueOf(sampleRates[i]));
+            writer.name("rms").value(Float.valueOf(rms[i]));
+            writer.name("band_power").value(Float.valueOf(bandPower[i]));
+            writer.name("band_ratio").value(Float.valueOf(bandRatio[i]));
+            writer.name("dominant_frequency").value(Float.valueOf(dominantFrequency[i]));
+            writer.endObject();
+        }
+        writer.endArray();
+    }
+
+    private void computeWindow() {
+        long start = windowTimestamps[0];
+        long end = windowTimestamps[WINDOW_SAMPLES - 1];
+        // sensors delivered in a single burst, the rate is unknown
+        if (end <= start) return;
+
+        double sampleRate = (WINDOW_SAMPLES - 1) * 1000.0 / (end - start);
+
+        // remove gravity and sensor offset
+        double mean = 0;
+        for (int i = 0; i < WINDOW_SAMPLES; i++) mean += windowValues[i];
+        mean /= WINDOW_SAMPLES;
+
+        double sumSquares = 0;
+        for (int i = 0; i < WINDOW_SAMPLES; i++) {
+            double value = windowValues[i] - mean;
+            sumSquares += value * value;
+        }
+
+        double band = 0;
+        double total = 0;
+        double peakPower = -1;
+        double peakFrequency = 0;
+        double nyquist = sampleRate / 2;
+        for (int bin = 0; bin < BINS; bin++) {
+            double frequency = MIN_HZ + bin * STEP_HZ;
+            if (frequency >= nyquist) break;
+
+            double power = goertzel(frequency / sampleRate, mean);
+            total += power;
+            if (frequency >= BAND_LOW_HZ && frequency <= BAND_HIGH_HZ) band += power;
+            if (power > peakPower) {
+                peakPower = power;
+                peakFrequency = frequency;
+            }
+        }
+
+        addWindow(start, end, (float) sampleRate, (float) Math.sqrt(sumSquares / WINDOW_SAMPLES),
+                (float) band, (float) (total > 0 ? band / total : 0), (float) peakFrequency);
+    }
+
+    // normalized power of the window at the given frequency (in cycles per sample)
+    private double goertzel(double frequency, double mean) {
+        double coefficient = 2 * Math.cos(2 * Math.PI * frequency);
+        double s1 = 0;
+        double s2 = 0;
+        for (int i = 0; i < WINDOW_SAMPLES; i++) {
+            double s0 = windowValues[i] - mean + coefficient * s1 - s2;
+            s2 = s1;
+            s1 = s0;
+        }
+        double power = s1 * s1 + s2 * s2 - coefficient * s1 * s2;
+        return power / ((double) WINDOW_SAMPLES * WINDOW_SAMPLES);
+    }
+
+    private void grow(int capacity) {
+        startTimestamps = Arrays.copyOf(startTimestamps, capacity);
+        endTimestamps = Arrays.copyOf(endTimestamps, capacity);
+        sampleRates = Arrays.copyOf(sampleRates, capacity);
+        rms = Arrays.copyOf(rms, capacity);
+        bandPower = Arrays.copyOf(bandPower, capacity);
+        bandRatio = Arrays.copyOf(bandRatio, capacity);
+        dominantFrequency = Arrays.copyOf(dominantFrequency, capacity);
+    }
+}
@@ -0,0 +1,82 @@
+package com.aware.app.stop.database;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/*
+ * Coalesces the change notifications of Provider: changes of one table within a short
+ * window are dispatched as a single notification, from a background thread. A table with
+ * a single changed row is notified with that row's URI, so observers can still load just
+ * the row (see MedicationFragment); with more changes the table URI is notified.
+ */
+
+class ChangeNotifier {
+
+    // how long changes of a table are gathered before its observers are woken up
+    static final long WINDOW_MILLIS = 100;
+
+    private final ContentResolver resolver;
+    private final Handler handler;
+
+    // table URI -> URI to notify, guarded by this
+    private final HashMap<Uri, Uri> pending = new HashMap<>();
+    private boolean scheduled;
+
+    private final Runnable dispatch = new Runnable() {
+        @Override
+        public void run() {
+            ArrayList<Uri> uris;
+            synchronized (ChangeNotifier.this) {
+                uris = new ArrayList<>(pending.values());
+                pending.clear();
+                scheduled = false;
+            }
+            for (Uri uri : uris) {
+                resolver.notifyChange(uri, null, false);
+            }
+        }
+    };
+
+    ChangeNotifier(ContentResolver resolver) {
+        this.resolver = resolver;
+
+        HandlerThread thread = new HandlerThread("stop-provider-notify", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    // a row or table has changed and its transaction is committed
+    synchronized void notifyChange(Uri uri) {
+        Uri table = tableUri(uri);
+        Uri previous = pending.get(table);
+        if (previous == null) {
+            pending.put(table, uri);
+        } else if (!previous.equals(uri)) {
+            pending.put(table, table);
+        }
+
+        if (!scheduled) {
+            scheduled = true;
+            handler.postDelayed(dispatch, WINDOW_MILLIS);
+        }
+    }
+
+    // tables changed in one transaction
+    synchronized void notifyChanges(Iterable<Uri> uris) {
+        for (Uri uri : uris) {
+            notifyChange(uri);
+        }
+    }
+
+    // URI of the table a row or table URI belongs to, without query parameters
+    static Uri tableUri(Uri uri) {
+        return new Uri.Builder().scheme(uri.getScheme()).authority(uri.getAuthority())
+                .appendPath(uri.getPathSegments().get(0)).build();
+    }
+}
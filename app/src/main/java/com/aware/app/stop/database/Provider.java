@@ -1,23 +1,29 @@
 package com.aware.app.stop.database;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
 import android.provider.BaseColumns;
 
 import androidx.annotation.Nullable;
 
-import com.aware.utils.DatabaseHelper;
-
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 
 public class Provider extends ContentProvider {
 
@@ -27,15 +33,21 @@ public class Provider extends ContentProvider {
     public static String AUTHORITY = "com.aware.app.stop.database.provider.stop_project";
 
     /**
-     * ContentProvider database version. Increment every time you modify the database structure
+     * ContentProvider database version. Increment every time you modify the database structure;
+     * changes other than new tables and columns also need a migration in StopDatabaseHelper
      */
-    public static final int DATABASE_VERSION = 1;
+    public static final int DATABASE_VERSION = 7;
 
     /**
      * Database stored in external folder: /AWARE/stop.db
      */
     public static final String DATABASE_NAME = "stop.db";
 
+    /**
+     * Optional query parameter of query URIs: maximum number of rows returned
+     */
+    public static final String QUERY_PARAMETER_LIMIT = "limit";
+
     //Database table names
     public static final String DB_TBL_GAME = "ball_game";
     public static final String DB_TBL_MEDICATION = "medication";
@@ -43,6 +55,9 @@ public class Provider extends ContentProvider {
     public static final String DB_TBL_NOTIFICATION = "notification_data";
     public static final String DB_TBL_HEALTH = "health";
     public static final String DB_TBL_CONSENT = "consent";
+    public static final String DB_TBL_GAME_CHUNKS = "ball_game_chunks";
+    public static final String DB_TBL_PERF_SESSION = "perf_session";
+    public static final String DB_TBL_STARTUP_TRACE = "startup_trace";
 
     //ContentProvider query indexes
     private static final int TABLE_GAME_DIR = 1;
@@ -57,13 +72,21 @@ public class Provider extends ContentProvider {
     private static final int TABLE_HEALTH_ITEM = 10;
     private static final int TABLE_CONSENT_DIR = 11;
     private static final int TABLE_CONSENT_ITEM = 12;
+    private static final int TABLE_GAME_CHUNKS_DIR = 13;
+    private static final int TABLE_GAME_CHUNKS_ITEM = 14;
+    private static final int TABLE_PERF_SESSION_DIR = 15;
+    private static final int TABLE_PERF_SESSION_ITEM = 16;
+    private static final int TABLE_STARTUP_TRACE_DIR = 17;
+    private static final int TABLE_STARTUP_TRACE_ITEM = 18;
 
     /**
      * Database tables:
-     * - ball game data, medication data, feedback, notification data, health, consent
+     * - ball game data, medication data, feedback, notification data, health, consent, ball game chunks,
+     * perf session, startup trace
      */
     public static final String[] DATABASE_TABLES = {
-            DB_TBL_GAME, DB_TBL_MEDICATION, DB_TBL_FEEDBACK, DB_TBL_NOTIFICATION, DB_TBL_HEALTH, DB_TBL_CONSENT
+            DB_TBL_GAME, DB_TBL_MEDICATION, DB_TBL_FEEDBACK, DB_TBL_NOTIFICATION, DB_TBL_HEALTH, DB_TBL_CONSENT,
+            DB_TBL_GAME_CHUNKS, DB_TBL_PERF_SESSION, DB_TBL_STARTUP_TRACE
     };
 
     //These are columns that we need to sync data, don't change this!
@@ -82,6 +105,31 @@ public class Provider extends ContentProvider {
         public static final String CONTENT_ITEM_TYPE = ContentResolver.CURSOR_ITEM_BASE_TYPE + "/vnd.com.aware.app.stop.database.provider.ball_game";
 
         public static final String DATA = "data";
+        public static final String FORMAT_VERSION = "format_version";
+        public static final String GAME_ID = "game_id";
+
+        /**
+         * Frame timing while sampling: frames drawn, frame time percentiles in milliseconds
+         * and display frames missed by the render loop
+         */
+        public static final String FRAMES = "frames";
+        public static final String FRAME_TIME_P50 = "frame_time_p50";
+        public static final String FRAME_TIME_P95 = "frame_time_p95";
+        public static final String FRAME_TIME_P99 = "frame_time_p99";
+        public static final String DROPPED_FRAMES = "dropped_frames";
+
+        /**
+         * Formats of the data column: JSON document, Base64 of the GameDataEncoder binary encoding,
+         * JSON document with empty sample arrays whose samples are stored in Game_Chunks,
+         * JSON document with empty sample arrays and only the tremor features,
+         * or JSON document whose header also holds the tremor features and delivery stats.
+         * Format 1 stays exactly the document of the original game; formats 3 to 5 have the stats
+         */
+        public static final int FORMAT_JSON = 1;
+        public static final int FORMAT_BINARY = 2;
+        public static final int FORMAT_CHUNKED = 3;
+        public static final int FORMAT_FEATURES = 4;
+        public static final int FORMAT_JSON_STATS = 5;
     }
 
     //Game table fields
@@ -89,7 +137,14 @@ public class Provider extends ContentProvider {
             Game_Data._ID + " integer primary key autoincrement," +
                     Game_Data.TIMESTAMP + " real default 0," +
                     Game_Data.DEVICE_ID + " text default ''," +
-                    Game_Data.DATA + " longtext default ''";
+                    Game_Data.DATA + " longtext default ''," +
+                    Game_Data.FORMAT_VERSION + " integer default " + Game_Data.FORMAT_JSON + "," +
+                    Game_Data.GAME_ID + " text default ''," +
+                    Game_Data.FRAMES + " integer default 0," +
+                    Game_Data.FRAME_TIME_P50 + " real default 0," +
+                    Game_Data.FRAME_TIME_P95 + " real default 0," +
+                    Game_Data.FRAME_TIME_P99 + " real default 0," +
+                    Game_Data.DROPPED_FRAMES + " integer default 0";
 
     /**
      * Medication table
@@ -184,27 +239,168 @@ public class Provider extends ContentProvider {
                     Consent_Data.DEVICE_ID + " text default ''," +
                     Consent_Data.USER_DATA + " text default ''";
 
+    /**
+     * Game chunks table: samples of long games split per sensor into bounded rows
+     */
+    public static final class Game_Chunks implements AWAREColumns {
+        public static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/" + DB_TBL_GAME_CHUNKS);
+        public static final String CONTENT_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE + "/vnd.com.aware.app.stop.database.provider.ball_game_chunks";
+        public static final String CONTENT_ITEM_TYPE = ContentResolver.CURSOR_ITEM_BASE_TYPE + "/vnd.com.aware.app.stop.database.provider.ball_game_chunks";
+
+        public static final String GAME_ID = "game_id";
+        public static final String SENSOR = "sensor";
+        public static final String SEQUENCE = "sequence";
+        public static final String DATA = "data";
+
+        /**
+         * Streams the chunks of one sensor of a game back in capture order.
+         * Each row holds a JSON array of at most GameChunk.CHUNK_SAMPLES samples.
+         *
+         * @param gameId Game_Data.GAME_ID of the game
+         * @param sensor JSON key of the stream: samples, accelerometer, linearaccelerometer, gyroscope or rotation
+         */
+        public static Cursor query(ContentResolver resolver, String gameId, String sensor) {
+            return resolver.query(CONTENT_URI, new String[]{SEQUENCE, DATA},
+                    GAME_ID + " = ? AND " + SENSOR + " = ?", new String[]{gameId, sensor},
+                    SEQUENCE + " ASC");
+        }
+    }
+
+    //Game chunks table fields
+    private static final String DB_TBL_GAME_CHUNKS_FIELDS =
+            Game_Chunks._ID + " integer primary key autoincrement," +
+                    Game_Chunks.TIMESTAMP + " real default 0," +
+                    Game_Chunks.DEVICE_ID + " text default ''," +
+                    Game_Chunks.GAME_ID + " text default ''," +
+                    Game_Chunks.SENSOR + " text default ''," +
+                    Game_Chunks.SEQUENCE + " integer default 0," +
+                    Game_Chunks.DATA + " longtext default ''";
+
+    /**
+     * Perf session table: resources used by the app during one game
+     */
+    public static final class Perf_Session implements AWAREColumns {
+        public static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/" + DB_TBL_PERF_SESSION);
+        public static final String CONTENT_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE + "/vnd.com.aware.app.stop.database.provider.perf_session";
+        public static final String CONTENT_ITEM_TYPE = ContentResolver.CURSOR_ITEM_BASE_TYPE + "/vnd.com.aware.app.stop.database.provider.perf_session";
+
+        public static final String GAME_ID = "game_id";
+        public static final String SENSOR_BACKEND = "sensor_backend";
+        public static final String DURATION = "duration";
+        public static final String GC_COUNT = "gc_count";
+        public static final String GC_TIME = "gc_time";
+        public static final String ALLOCATED_BYTES = "allocated_bytes";
+        public static final String PEAK_HEAP = "peak_heap";
+        public static final String BUFFER_SAMPLES = "buffer_samples";
+        public static final String BUFFER_CAPACITY = "buffer_capacity";
+        public static final String SENSOR_CPU_TIME = "sensor_cpu_time";
+    }
+
+    //Perf session table fields
+    private static final String DB_TBL_PERF_SESSION_FIELDS =
+            Perf_Session._ID + " integer primary key autoincrement," +
+                    Perf_Session.TIMESTAMP + " real default 0," +
+                    Perf_Session.DEVICE_ID + " text default ''," +
+                    Perf_Session.GAME_ID + " text default ''," +
+                    Perf_Session.SENSOR_BACKEND + " text default ''," +
+                    Perf_Session.DURATION + " integer default 0," +
+                    Perf_Session.GC_COUNT + " integer default -1," +
+                    Perf_Session.GC_TIME + " integer default -1," +
+                    Perf_Session.ALLOCATED_BYTES + " integer default -1," +
+                    Perf_Session.PEAK_HEAP + " integer default 0," +
+                    Perf_Session.BUFFER_SAMPLES + " integer default 0," +
+                    Perf_Session.BUFFER_CAPACITY + " integer default 0," +
+                    Perf_Session.SENSOR_CPU_TIME + " integer default -1";
+
+    /**
+     * Startup trace table: phases of one app launch in milliseconds from its start,
+     * -1 for phases the launch didn't go through
+     */
+    public static final class Startup_Trace implements AWAREColumns {
+        public static final Uri CONTENT_URI = Uri.parse("content://" + AUTHORITY + "/" + DB_TBL_STARTUP_TRACE);
+        public static final String CONTENT_TYPE = ContentResolver.CURSOR_DIR_BASE_TYPE + "/vnd.com.aware.app.stop.database.provider.startup_trace";
+        public static final String CONTENT_ITEM_TYPE = ContentResolver.CURSOR_ITEM_BASE_TYPE + "/vnd.com.aware.app.stop.database.provider.startup_trace";
+
+        public static final String APP_VERSION = "app_version";
+        public static final String APP_VERSION_CODE = "app_version_code";
+        public static final String API_LEVEL = "api_level";
+        public static final String COLD_START = "cold_start";
+        public static final String SPLASH_CREATED = "splash_created";
+        public static final String CRASHLYTICS_READY = "crashlytics_ready";
+        public static final String PERMISSIONS_CHECKED = "permissions_checked";
+        public static final String AWARE_STARTED = "aware_started";
+        public static final String MAIN_CREATED = "main_created";
+        public static final String MAIN_INFLATED = "main_inflated";
+        public static final String MAIN_FIRST_FRAME = "main_first_frame";
+        public static final String GAME_FIRST_FRAME = "game_first_frame";
+    }
+
+    //Startup trace table fields
+    private static final String DB_TBL_STARTUP_TRACE_FIELDS =
+            Startup_Trace._ID + " integer primary key autoincrement," +
+                    Startup_Trace.TIMESTAMP + " real default 0," +
+                    Startup_Trace.DEVICE_ID + " text default ''," +
+                    Startup_Trace.APP_VERSION + " text default ''," +
+                    Startup_Trace.APP_VERSION_CODE + " integer default 0," +
+                    Startup_Trace.API_LEVEL + " integer default 0," +
+                    Startup_Trace.COLD_START + " integer default 0," +
+                    Startup_Trace.SPLASH_CREATED + " integer default -1," +
+                    Startup_Trace.CRASHLYTICS_READY + " integer default -1," +
+                    Startup_Trace.PERMISSIONS_CHECKED + " integer default -1," +
+                    Startup_Trace.AWARE_STARTED + " integer default -1," +
+                    Startup_Trace.MAIN_CREATED + " integer default -1," +
+                    Startup_Trace.MAIN_INFLATED + " integer default -1," +
+                    Startup_Trace.MAIN_FIRST_FRAME + " integer default -1," +
+                    Startup_Trace.GAME_FIRST_FRAME + " integer default -1";
+
 
     /**
      * Share the fields with AWARE so we can replicate the table schema on the server
      */
     public static final String[] TABLES_FIELDS = {
             DB_TBL_GAME_FIELDS, DB_TBL_MEDICATION_FIELDS, DB_TBL_FEEDBACK_FIELDS,
-            DB_TBL_NOTIFICATION_FIELDS, DB_TBL_HEALTH_FIELDS, DB_TBL_CONSENT_FIELDS
+            DB_TBL_NOTIFICATION_FIELDS, DB_TBL_HEALTH_FIELDS, DB_TBL_CONSENT_FIELDS,
+            DB_TBL_GAME_CHUNKS_FIELDS, DB_TBL_PERF_SESSION_FIELDS, DB_TBL_STARTUP_TRACE_FIELDS
     };
 
     //Helper variables for ContentProvider - DO NOT CHANGE
     private UriMatcher sUriMatcher;
-    private DatabaseHelper dbHelper;
-    private static SQLiteDatabase database;
+    private StopDatabaseHelper dbHelper;
+    private static volatile SQLiteDatabase database;
     private void initialiseDatabase() {
-        if (dbHelper == null)
-            dbHelper = new DatabaseHelper(getContext(), DATABASE_NAME, null, DATABASE_VERSION, DATABASE_TABLES, TABLES_FIELDS);
-        if (database == null)
-            database = dbHelper.getWritableDatabase();
+        if (database != null) return;
+
+        // the game writer, the journal and the sync adapter may open the database at the same time
+        synchronized (Provider.class) {
+            if (dbHelper == null)
+                dbHelper = new StopDatabaseHelper(getContext(), DATABASE_NAME, DATABASE_VERSION, DATABASE_TABLES, TABLES_FIELDS);
+            if (database == null)
+                database = configureDatabase(dbHelper.getWritableDatabase());
+        }
     }
     //--
 
+    /**
+     * WAL checkpoint policy: the log is checkpointed once it reaches this many pages (4 MB with
+     * the default page size), so a whole game is committed before its pages are copied back
+     */
+    private static final int WAL_AUTOCHECKPOINT_PAGES = 1000;
+
+    /**
+     * Size in bytes the write-ahead log is truncated to after a checkpoint, so one large game
+     * doesn't leave a large log file behind
+     */
+    private static final long WAL_SIZE_LIMIT = 4 * 1024 * 1024;
+
+    // Write-ahead logging lets readers (journal, sync adapter) run while a game is being written
+    private static SQLiteDatabase configureDatabase(SQLiteDatabase db) {
+        if (db.enableWriteAheadLogging()) {
+            DatabaseUtils.longForQuery(db, "PRAGMA wal_autocheckpoint=" + WAL_AUTOCHECKPOINT_PAGES, null);
+            DatabaseUtils.longForQuery(db, "PRAGMA journal_size_limit=" + WAL_SIZE_LIMIT, null);
+        }
+        return db;
+    }
+
     //For each table, create a hashmap needed for database queries
     private HashMap<String, String> tableGameHash;
     private HashMap<String, String> tableMedicationHash;
@@ -212,6 +408,15 @@ public class Provider extends ContentProvider {
     private HashMap<String, String> tableNotificationHash;
     private HashMap<String, String> tableHealthHash;
     private HashMap<String, String> tableConsentHash;
+    private HashMap<String, String> tableGameChunksHash;
+    private HashMap<String, String> tablePerfSessionHash;
+    private HashMap<String, String> tableStartupTraceHash;
+
+    // tables changed by the batch running on this thread, notified once it is committed
+    private final ThreadLocal<HashSet<Uri>> batchChanges = new ThreadLocal<>();
+
+    // dispatches at most one change notification per table and window
+    private ChangeNotifier changeNotifier;
 
     /**
      * Returns the provider authority that is dynamic
@@ -228,6 +433,7 @@ public class Provider extends ContentProvider {
         AUTHORITY = getContext().getPackageName() + ".database.provider.stop_project";
 
         sUriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
+        changeNotifier = new ChangeNotifier(getContext().getContentResolver());
 
         //Game table indexes DIR and ITEM
         sUriMatcher.addURI(AUTHORITY, DATABASE_TABLES[0], TABLE_GAME_DIR);
@@ -253,12 +459,31 @@ public class Provider extends ContentProvider {
         sUriMatcher.addURI(AUTHORITY, DATABASE_TABLES[5], TABLE_CONSENT_DIR);
         sUriMatcher.addURI(AUTHORITY, DATABASE_TABLES[5] + "/#", TABLE_CONSENT_ITEM);
 
+        //Game chunks table indexes DIR and ITEM
+        sUriMatcher.addURI(AUTHORITY, DATABASE_TABLES[6], TABLE_GAME_CHUNKS_DIR);
+        sUriMatcher.addURI(AUTHORITY, DATABASE_TABLES[6] + "/#", TABLE_GAME_CHUNKS_ITEM);
+
+        //Perf session table indexes DIR and ITEM
+        sUriMatcher.addURI(AUTHORITY, DATABASE_TABLES[7], TABLE_PERF_SESSION_DIR);
+        sUriMatcher.addURI(AUTHORITY, DATABASE_TABLES[7] + "/#", TABLE_PERF_SESSION_ITEM);
+
+        //Startup trace table indexes DIR and ITEM
+        sUriMatcher.addURI(AUTHORITY, DATABASE_TABLES[8], TABLE_STARTUP_TRACE_DIR);
+        sUriMatcher.addURI(AUTHORITY, DATABASE_TABLES[8] + "/#", TABLE_STARTUP_TRACE_ITEM);
+
         //Game table HasMap
         tableGameHash = new HashMap<>();
         tableGameHash.put(Game_Data._ID, Game_Data._ID);
         tableGameHash.put(Game_Data.TIMESTAMP, Game_Data.TIMESTAMP);
         tableGameHash.put(Game_Data.DEVICE_ID, Game_Data.DEVICE_ID);
         tableGameHash.put(Game_Data.DATA, Game_Data.DATA);
+        tableGameHash.put(Game_Data.FORMAT_VERSION, Game_Data.FORMAT_VERSION);
+        tableGameHash.put(Game_Data.GAME_ID, Game_Data.GAME_ID);
+        tableGameHash.put(Game_Data.FRAMES, Game_Data.FRAMES);
+        tableGameHash.put(Game_Data.FRAME_TIME_P50, Game_Data.FRAME_TIME_P50);
+        tableGameHash.put(Game_Data.FRAME_TIME_P95, Game_Data.FRAME_TIME_P95);
+        tableGameHash.put(Game_Data.FRAME_TIME_P99, Game_Data.FRAME_TIME_P99);
+        tableGameHash.put(Game_Data.DROPPED_FRAMES, Game_Data.DROPPED_FRAMES);
 
         //Medication table HasMap
         tableMedicationHash = new HashMap<>();
@@ -296,6 +521,50 @@ public class Provider extends ContentProvider {
         tableConsentHash.put(Consent_Data.DEVICE_ID, Consent_Data.DEVICE_ID);
         tableConsentHash.put(Consent_Data.USER_DATA, Consent_Data.USER_DATA);
 
+        //Game chunks table HasMap
+        tableGameChunksHash = new HashMap<>();
+        tableGameChunksHash.put(Game_Chunks._ID, Game_Chunks._ID);
+        tableGameChunksHash.put(Game_Chunks.TIMESTAMP, Game_Chunks.TIMESTAMP);
+        tableGameChunksHash.put(Game_Chunks.DEVICE_ID, Game_Chunks.DEVICE_ID);
+        tableGameChunksHash.put(Game_Chunks.GAME_ID, Game_Chunks.GAME_ID);
+        tableGameChunksHash.put(Game_Chunks.SENSOR, Game_Chunks.SENSOR);
+        tableGameChunksHash.put(Game_Chunks.SEQUENCE, Game_Chunks.SEQUENCE);
+        tableGameChunksHash.put(Game_Chunks.DATA, Game_Chunks.DATA);
+
+        //Perf session table HasMap
+        tablePerfSessionHash = new HashMap<>();
+        tablePerfSessionHash.put(Perf_Session._ID, Perf_Session._ID);
+        tablePerfSessionHash.put(Perf_Session.TIMESTAMP, Perf_Session.TIMESTAMP);
+        tablePerfSessionHash.put(Perf_Session.DEVICE_ID, Perf_Session.DEVICE_ID);
+        tablePerfSessionHash.put(Perf_Session.GAME_ID, Perf_Session.GAME_ID);
+        tablePerfSessionHash.put(Perf_Session.SENSOR_BACKEND, Perf_Session.SENSOR_BACKEND);
+        tablePerfSessionHash.put(Perf_Session.DURATION, Perf_Session.DURATION);
+        tablePerfSessionHash.put(Perf_Session.GC_COUNT, Perf_Session.GC_COUNT);
+        tablePerfSessionHash.put(Perf_Session.GC_TIME, Perf_Session.GC_TIME);
+        tablePerfSessionHash.put(Perf_Session.ALLOCATED_BYTES, Perf_Session.ALLOCATED_BYTES);
+        tablePerfSessionHash.put(Perf_Session.PEAK_HEAP, Perf_Session.PEAK_HEAP);
+        tablePerfSessionHash.put(Perf_Session.BUFFER_SAMPLES, Perf_Session.BUFFER_SAMPLES);
+        tablePerfSessionHash.put(Perf_Session.BUFFER_CAPACITY, Perf_Session.BUFFER_CAPACITY);
+        tablePerfSessionHash.put(Perf_Session.SENSOR_CPU_TIME, Perf_Session.SENSOR_CPU_TIME);
+
+        //Startup trace table HasMap
+        tableStartupTraceHash = new HashMap<>();
+        tableStartupTraceHash.put(Startup_Trace._ID, Startup_Trace._ID);
+        tableStartupTraceHash.put(Startup_Trace.TIMESTAMP, Startup_Trace.TIMESTAMP);
+        tableStartupTraceHash.put(Startup_Trace.DEVICE_ID, Startup_Trace.DEVICE_ID);
+        tableStartupTraceHash.put(Startup_Trace.APP_VERSION, Startup_Trace.APP_VERSION);
+        tableStartupTraceHash.put(Startup_Trace.APP_VERSION_CODE, Startup_Trace.APP_VERSION_CODE);
+        tableStartupTraceHash.put(Startup_Trace.API_LEVEL, Startup_Trace.API_LEVEL);
+        tableStartupTraceHash.put(Startup_Trace.COLD_START, Startup_Trace.COLD_START);
+        tableStartupTraceHash.put(Startup_Trace.SPLASH_CREATED, Startup_Trace.SPLASH_CREATED);
+        tableStartupTraceHash.put(Startup_Trace.CRASHLYTICS_READY, Startup_Trace.CRASHLYTICS_READY);
+        tableStartupTraceHash.put(Startup_Trace.PERMISSIONS_CHECKED, Startup_Trace.PERMISSIONS_CHECKED);
+        tableStartupTraceHash.put(Startup_Trace.AWARE_STARTED, Startup_Trace.AWARE_STARTED);
+        tableStartupTraceHash.put(Startup_Trace.MAIN_CREATED, Startup_Trace.MAIN_CREATED);
+        tableStartupTraceHash.put(Startup_Trace.MAIN_INFLATED, Startup_Trace.MAIN_INFLATED);
+        tableStartupTraceHash.put(Startup_Trace.MAIN_FIRST_FRAME, Startup_Trace.MAIN_FIRST_FRAME);
+        tableStartupTraceHash.put(Startup_Trace.GAME_FIRST_FRAME, Startup_Trace.GAME_FIRST_FRAME);
+
         return true;
     }
 
@@ -303,35 +572,63 @@ public class Provider extends ContentProvider {
     public int delete(Uri uri, String selection, String[] selectionArgs) {
         initialiseDatabase();
 
-        database.beginTransaction();
+        int match = sUriMatcher.match(uri);
+
+        if (itemIndex(match) >= 0) {
+            selection = whereId(selection);
+            selectionArgs = idArgs(uri, selectionArgs);
+        }
+
+        database.beginTransactionNonExclusive();
 
         int count;
-        switch (sUriMatcher.match(uri)) {
+        switch (match) {
 
             case TABLE_GAME_DIR:
+            case TABLE_GAME_ITEM:
                 count = database.delete(DATABASE_TABLES[0], selection, selectionArgs);
                 break;
 
             case TABLE_MEDICATION_DIR:
+            case TABLE_MEDICATION_ITEM:
                 count = database.delete(DATABASE_TABLES[1], selection, selectionArgs);
                 break;
 
             case TABLE_FEEDBACK_DIR:
+            case TABLE_FEEDBACK_ITEM:
                 count = database.delete(DATABASE_TABLES[2], selection, selectionArgs);
                 break;
 
             case TABLE_NOTIFICATION_DIR:
+            case TABLE_NOTIFICATION_ITEM:
                 count = database.delete(DATABASE_TABLES[3], selection, selectionArgs);
                 break;
 
             case TABLE_HEALTH_DIR:
+            case TABLE_HEALTH_ITEM:
                 count = database.delete(DATABASE_TABLES[4], selection, selectionArgs);
                 break;
 
             case TABLE_CONSENT_DIR:
+            case TABLE_CONSENT_ITEM:
                 count = database.delete(DATABASE_TABLES[5], selection, selectionArgs);
                 break;
 
+            case TABLE_GAME_CHUNKS_DIR:
+            case TABLE_GAME_CHUNKS_ITEM:
+                count = database.delete(DATABASE_TABLES[6], selection, selectionArgs);
+                break;
+
+            case TABLE_PERF_SESSION_DIR:
+            case TABLE_PERF_SESSION_ITEM:
+                count = database.delete(DATABASE_TABLES[7], selection, selectionArgs);
+                break;
+
+            case TABLE_STARTUP_TRACE_DIR:
+            case TABLE_STARTUP_TRACE_ITEM:
+                count = database.delete(DATABASE_TABLES[8], selection, selectionArgs);
+                break;
+
             default:
                 database.endTransaction();
                 throw new IllegalArgumentException("Unknown URI " + uri);
@@ -340,7 +637,8 @@ public class Provider extends ContentProvider {
         database.setTransactionSuccessful();
         database.endTransaction();
 
-        getContext().getContentResolver().notifyChange(uri, null, false);
+        // nothing to tell observers when no row was deleted
+        if (count > 0) notifyChange(uri);
         return count;
     }
 
@@ -352,7 +650,7 @@ public class Provider extends ContentProvider {
 
         ContentValues values = (initialValues != null) ? new ContentValues(initialValues) : new ContentValues();
 
-        database.beginTransaction();
+        database.beginTransactionNonExclusive();
 
         switch (sUriMatcher.match(uri)) {
 
@@ -362,10 +660,9 @@ public class Provider extends ContentProvider {
                 database.endTransaction();
                 if (game_id > 0) {
                     Uri dataUri = ContentUris.withAppendedId(Game_Data.CONTENT_URI, game_id);
-                    getContext().getContentResolver().notifyChange(dataUri, null, false);
+                    notifyChange(dataUri);
                     return dataUri;
                 }
-                database.endTransaction();
                 throw new SQLException("Failed to insert row into " + uri);
 
             case TABLE_MEDICATION_DIR:
@@ -374,10 +671,9 @@ public class Provider extends ContentProvider {
                 database.endTransaction();
                 if (medication_id > 0) {
                     Uri dataUri = ContentUris.withAppendedId(Medication_Data.CONTENT_URI, medication_id);
-                    getContext().getContentResolver().notifyChange(dataUri, null, false);
+                    notifyChange(dataUri);
                     return dataUri;
                 }
-                database.endTransaction();
                 throw new SQLException("Failed to insert row into " + uri);
 
             case TABLE_FEEDBACK_DIR:
@@ -386,10 +682,9 @@ public class Provider extends ContentProvider {
                 database.endTransaction();
                 if (feedback_id > 0) {
                     Uri dataUri = ContentUris.withAppendedId(Feedback_Data.CONTENT_URI, feedback_id);
-                    getContext().getContentResolver().notifyChange(dataUri, null, false);
+                    notifyChange(dataUri);
                     return dataUri;
                 }
-                database.endTransaction();
                 throw new SQLException("Failed to insert row into " + uri);
 
             case TABLE_NOTIFICATION_DIR:
@@ -398,10 +693,9 @@ public class Provider extends ContentProvider {
                 database.endTransaction();
                 if (notification_id > 0) {
                     Uri dataUri = ContentUris.withAppendedId(Notification_Data.CONTENT_URI, notification_id);
-                    getContext().getContentResolver().notifyChange(dataUri, null, false);
+                    notifyChange(dataUri);
                     return dataUri;
                 }
-                database.endTransaction();
                 throw new SQLException("Failed to insert row into " + uri);
 
             case TABLE_HEALTH_DIR:
@@ -410,10 +704,9 @@ public class Provider extends ContentProvider {
                 database.endTransaction();
                 if (health_id > 0) {
                     Uri dataUri = ContentUris.withAppendedId(Health_Data.CONTENT_URI, health_id);
-                    getContext().getContentResolver().notifyChange(dataUri, null, false);
+                    notifyChange(dataUri);
                     return dataUri;
                 }
-                database.endTransaction();
                 throw new SQLException("Failed to insert row into " + uri);
 
             case TABLE_CONSENT_DIR:
@@ -422,10 +715,42 @@ public class Provider extends ContentProvider {
                 database.endTransaction();
                 if (consent_id > 0) {
                     Uri dataUri = ContentUris.withAppendedId(Consent_Data.CONTENT_URI, consent_id);
-                    getContext().getContentResolver().notifyChange(dataUri, null, false);
+                    notifyChange(dataUri);
+                    return dataUri;
+                }
+                throw new SQLException("Failed to insert row into " + uri);
+
+            case TABLE_GAME_CHUNKS_DIR:
+                long chunk_id = database.insert(DATABASE_TABLES[6], Game_Chunks.DEVICE_ID, values);
+                database.setTransactionSuccessful();
+                database.endTransaction();
+                if (chunk_id > 0) {
+                    Uri dataUri = ContentUris.withAppendedId(Game_Chunks.CONTENT_URI, chunk_id);
+                    notifyChange(dataUri);
+                    return dataUri;
+                }
+                throw new SQLException("Failed to insert row into " + uri);
+
+            case TABLE_PERF_SESSION_DIR:
+                long perf_id = database.insert(DATABASE_TABLES[7], Perf_Session.DEVICE_ID, values);
+                database.setTransactionSuccessful();
+                database.endTransaction();
+                if (perf_id > 0) {
+                    Uri dataUri = ContentUris.withAppendedId(Perf_Session.CONTENT_URI, perf_id);
+                    notifyChange(dataUri);
                     return dataUri;
                 }
+                throw new SQLException("Failed to insert row into " + uri);
+
+            case TABLE_STARTUP_TRACE_DIR:
+                long startup_id = database.insert(DATABASE_TABLES[8], Startup_Trace.DEVICE_ID, values);
+                database.setTransactionSuccessful();
                 database.endTransaction();
+                if (startup_id > 0) {
+                    Uri dataUri = ContentUris.withAppendedId(Startup_Trace.CONTENT_URI, startup_id);
+                    notifyChange(dataUri);
+                    return dataUri;
+                }
                 throw new SQLException("Failed to insert row into " + uri);
 
             default:
@@ -440,39 +765,70 @@ public class Provider extends ContentProvider {
 
         initialiseDatabase();
 
+        int match = sUriMatcher.match(uri);
+
+        if (itemIndex(match) >= 0) {
+            selection = whereId(selection);
+            selectionArgs = idArgs(uri, selectionArgs);
+        }
+
         SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
-        switch (sUriMatcher.match(uri)) {
+        switch (match) {
 
             case TABLE_GAME_DIR:
+            case TABLE_GAME_ITEM:
                 qb.setTables(DATABASE_TABLES[0]);
                 qb.setProjectionMap(tableGameHash); //the hashmap of the table
                 break;
 
             case TABLE_MEDICATION_DIR:
+            case TABLE_MEDICATION_ITEM:
                 qb.setTables(DATABASE_TABLES[1]);
                 qb.setProjectionMap(tableMedicationHash); //the hashmap of the table
                 break;
 
             case TABLE_FEEDBACK_DIR:
+            case TABLE_FEEDBACK_ITEM:
                 qb.setTables(DATABASE_TABLES[2]);
                 qb.setProjectionMap(tableFeedbackHash); //the hashmap of the table
                 break;
 
             case TABLE_NOTIFICATION_DIR:
+            case TABLE_NOTIFICATION_ITEM:
                 qb.setTables(DATABASE_TABLES[3]);
                 qb.setProjectionMap(tableNotificationHash); //the hashmap of the table
                 break;
 
             case TABLE_HEALTH_DIR:
+            case TABLE_HEALTH_ITEM:
                 qb.setTables(DATABASE_TABLES[4]);
                 qb.setProjectionMap(tableHealthHash); //the hashmap of the table
                 break;
 
             case TABLE_CONSENT_DIR:
+            case TABLE_CONSENT_ITEM:
                 qb.setTables(DATABASE_TABLES[5]);
                 qb.setProjectionMap(tableConsentHash); //the hashmap of the table
                 break;
 
+            case TABLE_GAME_CHUNKS_DIR:
+            case TABLE_GAME_CHUNKS_ITEM:
+                qb.setTables(DATABASE_TABLES[6]);
+                qb.setProjectionMap(tableGameChunksHash); //the hashmap of the table
+                break;
+
+            case TABLE_PERF_SESSION_DIR:
+            case TABLE_PERF_SESSION_ITEM:
+                qb.setTables(DATABASE_TABLES[7]);
+                qb.setProjectionMap(tablePerfSessionHash); //the hashmap of the table
+                break;
+
+            case TABLE_STARTUP_TRACE_DIR:
+            case TABLE_STARTUP_TRACE_ITEM:
+                qb.setTables(DATABASE_TABLES[8]);
+                qb.setProjectionMap(tableStartupTraceHash); //the hashmap of the table
+                break;
+
             default:
                 throw new IllegalArgumentException("Unknown URI " + uri);
         }
@@ -480,7 +836,7 @@ public class Provider extends ContentProvider {
         //Don't change me
         try {
             Cursor c = qb.query(database, projection, selection, selectionArgs,
-                    null, null, sortOrder);
+                    null, null, sortOrder, uri.getQueryParameter(QUERY_PARAMETER_LIMIT));
             c.setNotificationUri(getContext().getContentResolver(), uri);
             return c;
         } catch (IllegalStateException e) {
@@ -523,6 +879,20 @@ public class Provider extends ContentProvider {
             case TABLE_CONSENT_ITEM:
                 return Consent_Data.CONTENT_ITEM_TYPE;
 
+            case TABLE_GAME_CHUNKS_DIR:
+                return Game_Chunks.CONTENT_TYPE;
+            case TABLE_GAME_CHUNKS_ITEM:
+                return Game_Chunks.CONTENT_ITEM_TYPE;
+
+            case TABLE_PERF_SESSION_DIR:
+                return Perf_Session.CONTENT_TYPE;
+            case TABLE_PERF_SESSION_ITEM:
+                return Perf_Session.CONTENT_ITEM_TYPE;
+            case TABLE_STARTUP_TRACE_DIR:
+                return Startup_Trace.CONTENT_TYPE;
+            case TABLE_STARTUP_TRACE_ITEM:
+                return Startup_Trace.CONTENT_ITEM_TYPE;
+
             default:
                 throw new IllegalArgumentException("Unknown URI " + uri);
         }
@@ -533,35 +903,63 @@ public class Provider extends ContentProvider {
 
         initialiseDatabase();
 
-        database.beginTransaction();
+        int match = sUriMatcher.match(uri);
+
+        if (itemIndex(match) >= 0) {
+            selection = whereId(selection);
+            selectionArgs = idArgs(uri, selectionArgs);
+        }
+
+        database.beginTransactionNonExclusive();
 
         int count;
-        switch (sUriMatcher.match(uri)) {
+        switch (match) {
 
             case TABLE_GAME_DIR:
+            case TABLE_GAME_ITEM:
                 count = database.update(DATABASE_TABLES[0], values, selection, selectionArgs);
                 break;
 
             case TABLE_MEDICATION_DIR:
+            case TABLE_MEDICATION_ITEM:
                 count = database.update(DATABASE_TABLES[1], values, selection, selectionArgs);
                 break;
 
             case TABLE_FEEDBACK_DIR:
+            case TABLE_FEEDBACK_ITEM:
                 count = database.update(DATABASE_TABLES[2], values, selection, selectionArgs);
                 break;
 
             case TABLE_NOTIFICATION_DIR:
+            case TABLE_NOTIFICATION_ITEM:
                 count = database.update(DATABASE_TABLES[3], values, selection, selectionArgs);
                 break;
 
             case TABLE_HEALTH_DIR:
+            case TABLE_HEALTH_ITEM:
                 count = database.update(DATABASE_TABLES[4], values, selection, selectionArgs);
                 break;
 
             case TABLE_CONSENT_DIR:
+            case TABLE_CONSENT_ITEM:
                 count = database.update(DATABASE_TABLES[5], values, selection, selectionArgs);
                 break;
 
+            case TABLE_GAME_CHUNKS_DIR:
+            case TABLE_GAME_CHUNKS_ITEM:
+                count = database.update(DATABASE_TABLES[6], values, selection, selectionArgs);
+                break;
+
+            case TABLE_PERF_SESSION_DIR:
+            case TABLE_PERF_SESSION_ITEM:
+                count = database.update(DATABASE_TABLES[7], values, selection, selectionArgs);
+                break;
+
+            case TABLE_STARTUP_TRACE_DIR:
+            case TABLE_STARTUP_TRACE_ITEM:
+                count = database.update(DATABASE_TABLES[8], values, selection, selectionArgs);
+                break;
+
             default:
                 database.endTransaction();
                 throw new IllegalArgumentException("Unknown URI " + uri);
@@ -569,8 +967,171 @@ public class Provider extends ContentProvider {
         database.setTransactionSuccessful();
         database.endTransaction();
 
-        getContext().getContentResolver().notifyChange(uri, null, false);
+        if (count > 0) notifyChange(uri);
 
         return count;
     }
+
+    /**
+     * Inserts all rows in one transaction with a compiled INSERT statement per column set,
+     * and notifies the table once. Rolls back all rows when one of them fails.
+     */
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+
+        initialiseDatabase();
+
+        int table = tableIndex(uri);
+        if (table < 0) throw new IllegalArgumentException("Unknown URI " + uri);
+
+        HashMap<String, SQLiteStatement> statements = new HashMap<>();
+        int count = 0;
+
+        database.beginTransactionNonExclusive();
+        try {
+            for (ContentValues row : values) {
+                if (insertRow(DATABASE_TABLES[table], row, statements) > 0) count++;
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            for (SQLiteStatement statement : statements.values()) statement.close();
+        }
+
+        if (count > 0) notifyChange(uri);
+        return count;
+    }
+
+    /**
+     * Applies all operations in one transaction and notifies each changed table once,
+     * after the transaction is committed. Rolls back all operations when one of them fails.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+
+        initialiseDatabase();
+
+        HashSet<Uri> changed = new HashSet<>();
+        ContentProviderResult[] results;
+
+        batchChanges.set(changed);
+        database.beginTransactionNonExclusive();
+        try {
+            results = super.applyBatch(operations);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+            batchChanges.remove();
+        }
+
+        changeNotifier.notifyChanges(changed);
+        return results;
+    }
+
+    // rows of a batch usually share their columns, so the statement is compiled once for them
+    private long insertRow(String table, ContentValues row, HashMap<String, SQLiteStatement> statements) {
+        if (row == null || row.size() == 0) {
+            return database.insert(table, AWAREColumns.DEVICE_ID, new ContentValues());
+        }
+
+        String[] columns = row.keySet().toArray(new String[0]);
+        Arrays.sort(columns);
+
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) sql.append(',');
+            sql.append(columns[i]);
+        }
+        sql.append(") VALUES (");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i > 0 ? ",?" : "?");
+        }
+        sql.append(')');
+
+        String key = sql.toString();
+        SQLiteStatement statement = statements.get(key);
+        if (statement == null) {
+            statement = database.compileStatement(key);
+            statements.put(key, statement);
+        }
+
+        statement.clearBindings();
+        for (int i = 0; i < columns.length; i++) {
+            DatabaseUtils.bindObjectToProgram(statement, i + 1, row.get(columns[i]));
+        }
+        return statement.executeInsert();
+    }
+
+    // an item URI selects its row with a bound _id (whereId, idArgs), so the statement is the same
+    // for every row and SQLite's per-connection statement cache skips parsing it again
+    private static String whereId(String selection) {
+        return DatabaseUtils.concatenateWhere(AWAREColumns._ID + " = ?", selection);
+    }
+
+    private static String[] idArgs(Uri uri, String[] selectionArgs) {
+        return DatabaseUtils.appendSelectionArgs(new String[]{String.valueOf(ContentUris.parseId(uri))}, selectionArgs);
+    }
+
+    // index in DATABASE_TABLES of a table URI, -1 when the URI is not a table
+    private int tableIndex(Uri uri) {
+        switch (sUriMatcher.match(uri)) {
+            case TABLE_GAME_DIR:
+                return 0;
+            case TABLE_MEDICATION_DIR:
+                return 1;
+            case TABLE_FEEDBACK_DIR:
+                return 2;
+            case TABLE_NOTIFICATION_DIR:
+                return 3;
+            case TABLE_HEALTH_DIR:
+                return 4;
+            case TABLE_CONSENT_DIR:
+                return 5;
+            case TABLE_GAME_CHUNKS_DIR:
+                return 6;
+            case TABLE_PERF_SESSION_DIR:
+                return 7;
+            case TABLE_STARTUP_TRACE_DIR:
+                return 8;
+            default:
+                return -1;
+        }
+    }
+
+    // index in DATABASE_TABLES of an item URI, -1 when the URI is not an item
+    private static int itemIndex(int match) {
+        switch (match) {
+            case TABLE_GAME_ITEM:
+                return 0;
+            case TABLE_MEDICATION_ITEM:
+                return 1;
+            case TABLE_FEEDBACK_ITEM:
+                return 2;
+            case TABLE_NOTIFICATION_ITEM:
+                return 3;
+            case TABLE_HEALTH_ITEM:
+                return 4;
+            case TABLE_CONSENT_ITEM:
+                return 5;
+            case TABLE_GAME_CHUNKS_ITEM:
+                return 6;
+            case TABLE_PERF_SESSION_ITEM:
+                return 7;
+            case TABLE_STARTUP_TRACE_ITEM:
+                return 8;
+            default:
+                return -1;
+        }
+    }
+
+    // inside applyBatch only the table is remembered, it is notified once the batch is committed
+    private void notifyChange(Uri uri) {
+        HashSet<Uri> changed = batchChanges.get();
+        if (changed != null) {
+            changed.add(ChangeNotifier.tableUri(uri));
+            return;
+        }
+        changeNotifier.notifyChange(uri);
+    }
 }
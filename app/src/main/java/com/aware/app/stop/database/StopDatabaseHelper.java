@@ -0,0 +1,98 @@
+package com.aware.app.stop.database;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.aware.app.stop.MainActivity;
+import com.aware.utils.DatabaseHelper;
+
+/*
+ * Schema migrations of stop.db. AWARE's DatabaseHelper creates missing tables and adds
+ * new columns from Provider.TABLES_FIELDS; everything else a schema version needs
+ * (indexes, data fixes) is a Migration here, run in the same transaction in version order.
+ * A new database runs all migrations on its freshly created tables.
+ * Removing a column makes DatabaseHelper rebuild its table without indexes; the version
+ * that removes it needs a migration that creates them again.
+ */
+
+public class StopDatabaseHelper extends DatabaseHelper {
+
+    // Statements that bring the schema to a version
+    private static class Migration {
+        private final int version;
+        private final String[] statements;
+
+        private Migration(int version, String... statements) {
+            this.version = version;
+            this.statements = statements;
+        }
+    }
+
+    private static final Migration[] MIGRATIONS = {
+            // secondary indexes: journal order, sync high-water marks and per-device lookups
+            new Migration(7,
+                    index(Provider.DB_TBL_MEDICATION, Provider.Medication_Data.MEDICATION_TIMESTAMP),
+                    index(Provider.DB_TBL_GAME_CHUNKS, Provider.Game_Chunks.GAME_ID, Provider.Game_Chunks.SENSOR,
+                            Provider.Game_Chunks.SEQUENCE),
+                    index(Provider.DB_TBL_GAME, Provider.AWAREColumns.TIMESTAMP),
+                    index(Provider.DB_TBL_GAME, Provider.AWAREColumns.DEVICE_ID, Provider.AWAREColumns.TIMESTAMP),
+                    index(Provider.DB_TBL_MEDICATION, Provider.AWAREColumns.TIMESTAMP),
+                    index(Provider.DB_TBL_MEDICATION, Provider.AWAREColumns.DEVICE_ID, Provider.AWAREColumns.TIMESTAMP),
+                    index(Provider.DB_TBL_FEEDBACK, Provider.AWAREColumns.TIMESTAMP),
+                    index(Provider.DB_TBL_FEEDBACK, Provider.AWAREColumns.DEVICE_ID, Provider.AWAREColumns.TIMESTAMP),
+                    index(Provider.DB_TBL_NOTIFICATION, Provider.AWAREColumns.TIMESTAMP),
+                    index(Provider.DB_TBL_NOTIFICATION, Provider.AWAREColumns.DEVICE_ID, Provider.AWAREColumns.TIMESTAMP),
+                    index(Provider.DB_TBL_HEALTH, Provider.AWAREColumns.TIMESTAMP),
+                    index(Provider.DB_TBL_HEALTH, Provider.AWAREColumns.DEVICE_ID, Provider.AWAREColumns.TIMESTAMP),
+                    index(Provider.DB_TBL_CONSENT, Provider.AWAREColumns.TIMESTAMP),
+                    index(Provider.DB_TBL_CONSENT, Provider.AWAREColumns.DEVICE_ID, Provider.AWAREColumns.TIMESTAMP),
+                    index(Provider.DB_TBL_GAME_CHUNKS, Provider.AWAREColumns.TIMESTAMP),
+                    index(Provider.DB_TBL_GAME_CHUNKS, Provider.AWAREColumns.DEVICE_ID, Provider.AWAREColumns.TIMESTAMP),
+                    index(Provider.DB_TBL_PERF_SESSION, Provider.AWAREColumns.TIMESTAMP),
+                    index(Provider.DB_TBL_PERF_SESSION, Provider.AWAREColumns.DEVICE_ID, Provider.AWAREColumns.TIMESTAMP),
+                    index(Provider.DB_TBL_STARTUP_TRACE, Provider.AWAREColumns.TIMESTAMP),
+                    index(Provider.DB_TBL_STARTUP_TRACE, Provider.AWAREColumns.DEVICE_ID, Provider.AWAREColumns.TIMESTAMP))
+    };
+
+    public StopDatabaseHelper(Context context, String databaseName, int databaseVersion,
+                              String[] databaseTables, String[] tablesFields) {
+        super(context, databaseName, null, databaseVersion, databaseTables, tablesFields);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        super.onCreate(db);
+        migrate(db, 0);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        super.onUpgrade(db, oldVersion, newVersion);
+        migrate(db, oldVersion);
+    }
+
+    // runs the migrations newer than the given version, up to Provider.DATABASE_VERSION
+    private static void migrate(SQLiteDatabase db, int fromVersion) {
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version <= fromVersion || migration.version > Provider.DATABASE_VERSION) continue;
+
+            for (String statement : migration.statements) {
+                db.execSQL(statement);
+            }
+            Log.d(MainActivity.STOP_TAG, "stop.db migrated to version " + migration.version);
+        }
+    }
+
+    // CREATE INDEX statement named after its table and columns
+    private static String index(String table, String... columns) {
+        StringBuilder name = new StringBuilder("idx_").append(table);
+        StringBuilder list = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            name.append('_').append(columns[i]);
+            if (i > 0) list.append(',');
+            list.append(columns[i]);
+        }
+        return "CREATE INDEX IF NOT EXISTS " + name + " ON " + table + " (" + list + ")";
+    }
+}
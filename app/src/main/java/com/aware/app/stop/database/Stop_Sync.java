@@ -28,7 +28,10 @@ public class Stop_Sync extends Service {
                                 Provider.Feedback_Data.CONTENT_URI,
                                 Provider.Notification_Data.CONTENT_URI,
                                 Provider.Health_Data.CONTENT_URI,
-                                Provider.Consent_Data.CONTENT_URI
+                                Provider.Consent_Data.CONTENT_URI,
+                                Provider.Game_Chunks.CONTENT_URI,
+                                Provider.Perf_Session.CONTENT_URI,
+                                Provider.Startup_Trace.CONTENT_URI
                         }
                 );
             }
@@ -0,0 +1,190 @@
+package com.aware.app.stop;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/*
+ * GameDataEncoder output read back by GameDataDecoder. Sample values are stored as
+ * float32, so they come back with float precision; everything else comes back as is.
+ */
+
+public class GameDataCodecTest {
+
+    private static final String DEVICE_ID = "5a2b6f0e-3c1d-4e8f-9a7b-0c1d2e3f4a5b";
+
+    private GameSession session;
+    private Random random;
+
+    @Before
+    public void setUp() {
+        session = new GameSession();
+        session.ballRadius = 150;
+        session.sensitivity = 3.5f;
+        session.deviceXres = 1080;
+        session.deviceYres = 1920;
+        session.score = 87.53125;
+        random = new Random(42);
+    }
+
+    @Test
+    public void roundTripKeepsEveryStream() throws IOException {
+        for (int i = 0; i < 600; i++) {
+            long timestamp = 1546300800000L + i * 20;
+            session.ball.record(timestamp, random.nextFloat() * 400 - 200, random.nextFloat() * 600 - 300,
+                    random.nextDouble() * 360);
+            recordSensor(session.accelerometer, session.accelerometerDelivery, timestamp, "tap <1> & 'hold'");
+            recordSensor(session.linearAccelerometer, session.linearAccelerometerDelivery, timestamp + 1, "");
+            recordSensor(session.gyroscope, session.gyroscopeDelivery, timestamp + 2, "");
+            recordSensor(session.rotation, session.rotationDelivery, timestamp + 3, "");
+            session.accelerometerTremor.add(timestamp, random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+            session.gyroscopeTremor.add(timestamp + 2, random.nextGaussian(), random.nextGaussian(), random.nextGaussian());
+        }
+        assertTrue(session.accelerometerTremor.size() > 0);
+
+        assertSessionEquals(session, roundTrip(session));
+    }
+
+    @Test
+    public void roundTripKeepsEmptyStreams() throws IOException {
+        GameSession decoded = roundTrip(session);
+
+        assertSessionEquals(session, decoded);
+        assertEquals(0, decoded.ball.size());
+        assertEquals(0, decoded.accelerometer.size());
+        assertEquals(0, decoded.accelerometerTremor.size());
+        assertEquals(0, decoded.rotationDelivery.getSamples());
+    }
+
+    @Test
+    public void roundTripKeepsNullLabelAndDeviceId() throws IOException {
+        session.accelerometer.record(1546300800000L, null, 9.81, 0.5, -0.25, 3, null);
+        session.gyroscope.record(1546300800002L, DEVICE_ID, 0.1, 0.2, 0.3, 0, null);
+
+        GameSession decoded = roundTrip(session);
+
+        assertSessionEquals(session, decoded);
+        assertNull(decoded.accelerometer.getDeviceId(0));
+        assertNull(decoded.accelerometer.getLabel(0));
+        assertEquals(DEVICE_ID, decoded.gyroscope.getDeviceId(0));
+        assertNull(decoded.gyroscope.getLabel(0));
+    }
+
+    @Test
+    public void badMagicIsRejected() {
+        byte[] data = new GameDataEncoder().encode(session);
+        data[0] ^= 0x01;
+
+        assertRejected(data);
+    }
+
+    @Test
+    public void unknownVersionIsRejected() {
+        byte[] data = new GameDataEncoder().encode(session);
+        data[4] = (byte) (GameDataEncoder.FORMAT_VERSION + 1);
+
+        assertRejected(data);
+    }
+
+    @Test
+    public void truncatedRecordIsRejected() {
+        session.accelerometer.record(1546300800000L, DEVICE_ID, 9.81, 0.5, -0.25, 3, "");
+        byte[] data = new GameDataEncoder().encode(session);
+
+        assertRejected(Arrays.copyOf(data, data.length - 1));
+    }
+
+    private void recordSensor(SampleRecorder recorder, DeliveryStats delivery, long timestamp, String label) {
+        recorder.record(timestamp, DEVICE_ID, random.nextGaussian() * 9.81, random.nextGaussian(),
+                random.nextGaussian() * 1e-7, random.nextInt(4), label);
+        delivery.onSample(timestamp, random.nextInt(5) == 0 ? -1 : random.nextInt(20000000));
+    }
+
+    private static GameSession roundTrip(GameSession session) throws IOException {
+        return GameDataDecoder.decode(new GameDataEncoder().encode(session));
+    }
+
+    private static void assertRejected(byte[] data) {
+        try {
+            GameDataDecoder.decode(data);
+            fail("decoded an invalid record");
+        } catch (IOException expected) {
+            // rejected
+        }
+    }
+
+    private static void assertSessionEquals(GameSession expected, GameSession actual) {
+        assertEquals(expected.ballRadius, actual.ballRadius);
+        assertEquals(expected.sensitivity, actual.sensitivity, 0);
+        assertEquals(expected.deviceXres, actual.deviceXres);
+        assertEquals(expected.deviceYres, actual.deviceYres);
+        assertEquals(expected.score, actual.score, 0);
+
+        assertEquals(expected.ball.size(), actual.ball.size());
+        for (int i = 0; i < expected.ball.size(); i++) {
+            assertEquals(expected.ball.getTimestamp(i), actual.ball.getTimestamp(i));
+            assertEquals(expected.ball.getBallX(i), actual.ball.getBallX(i), 0);
+            assertEquals(expected.ball.getBallY(i), actual.ball.getBallY(i), 0);
+            assertEquals((float) expected.ball.getDistance(i), actual.ball.getDistance(i), 0);
+        }
+
+        assertSamplesEqual(expected.accelerometer, actual.accelerometer);
+        assertSamplesEqual(expected.linearAccelerometer, actual.linearAccelerometer);
+        assertSamplesEqual(expected.gyroscope, actual.gyroscope);
+        assertSamplesEqual(expected.rotation, actual.rotation);
+
+        assertFeaturesEqual(expected.accelerometerTremor, actual.accelerometerTremor);
+        assertFeaturesEqual(expected.gyroscopeTremor, actual.gyroscopeTremor);
+
+        assertDeliveryEquals(expected.accelerometerDelivery, actual.accelerometerDelivery);
+        assertDeliveryEquals(expected.linearAccelerometerDelivery, actual.linearAccelerometerDelivery);
+        assertDeliveryEquals(expected.gyroscopeDelivery, actual.gyroscopeDelivery);
+        assertDeliveryEquals(expected.rotationDelivery, actual.rotationDelivery);
+    }
+
+    private static void assertSamplesEqual(SampleRecorder expected, SampleRecorder actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getTimestamp(i), actual.getTimestamp(i));
+            assertEquals(expected.getDeviceId(i), actual.getDeviceId(i));
+            assertEquals((float) expected.getValue0(i), actual.getValue0(i), 0);
+            assertEquals((float) expected.getValue1(i), actual.getValue1(i), 0);
+            assertEquals((float) expected.getValue2(i), actual.getValue2(i), 0);
+            assertEquals(expected.getAccuracy(i), actual.getAccuracy(i));
+            assertEquals(expected.getLabel(i), actual.getLabel(i));
+        }
+    }
+
+    private static void assertFeaturesEqual(TremorFeatures expected, TremorFeatures actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getStartTimestamp(i), actual.getStartTimestamp(i));
+            assertEquals(expected.getEndTimestamp(i), actual.getEndTimestamp(i));
+            assertEquals(expected.getSampleRate(i), actual.getSampleRate(i), 0);
+            assertEquals(expected.getRms(i), actual.getRms(i), 0);
+            assertEquals(expected.getBandPower(i), actual.getBandPower(i), 0);
+            assertEquals(expected.getBandRatio(i), actual.getBandRatio(i), 0);
+            assertEquals(expected.getDominantFrequency(i), actual.getDominantFrequency(i), 0);
+        }
+    }
+
+    private static void assertDeliveryEquals(DeliveryStats expected, DeliveryStats actual) {
+        assertEquals(expected.getSamples(), actual.getSamples());
+        assertEquals(expected.getFirstTimestamp(), actual.getFirstTimestamp());
+        assertEquals(expected.getLastTimestamp(), actual.getLastTimestamp());
+        assertEquals(expected.getMaxGap(), actual.getMaxGap());
+        assertArrayEquals(expected.getJitter(), actual.getJitter());
+        assertEquals(expected.getLatencyCount(), actual.getLatencyCount());
+        assertEquals(expected.getLatencySum(), actual.getLatencySum());
+        assertEquals(expected.getLatencyMax(), actual.getLatencyMax());
+    }
+}
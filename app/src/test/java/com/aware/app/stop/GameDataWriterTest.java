@@ -0,0 +1,114 @@
+package com.aware.app.stop;
+
+import com.google.gson.Gson;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * GameDataWriter against the string concatenation GameFragment used to build the
+ * Game_Data.DATA document with, which format 1 has to reproduce byte for byte.
+ */
+
+public class GameDataWriterTest {
+
+    private static final String DEVICE_ID = "5a2b6f0e-3c1d-4e8f-9a7b-0c1d2e3f4a5b";
+
+    private GameSession session;
+    private Random random;
+
+    @Before
+    public void setUp() {
+        session = new GameSession();
+        session.ballRadius = 150;
+        session.sensitivity = 3.5f;
+        session.deviceXres = 1080;
+        session.deviceYres = 1920;
+        session.score = 87.53125;
+        random = new Random(42);
+    }
+
+    @Test
+    public void formatOneMatchesLegacyDocument() {
+        for (int i = 0; i < 500; i++) {
+            long timestamp = 1546300800000L + i * 20;
+            session.ball.record(timestamp, random.nextFloat() * 400 - 200, random.nextFloat() * 600 - 300,
+                    random.nextDouble() * 360);
+            recordSensor(session.accelerometer, timestamp, "");
+            recordSensor(session.linearAccelerometer, timestamp + 1, null);
+            recordSensor(session.gyroscope, timestamp + 2, "tap <1> & 'hold'");
+            recordSensor(session.rotation, timestamp + 3, "");
+        }
+
+        assertEquals(legacyDocument(session), new GameDataWriter().write(session));
+    }
+
+    @Test
+    public void formatOneMatchesLegacyDocumentWithoutSensorData() {
+        session.ball.record(1546300800000L, 0.0f, -0.0f, 0.0);
+        recordSensor(session.accelerometer, 1546300800000L, "");
+
+        assertEquals(legacyDocument(session), new GameDataWriter().write(session));
+    }
+
+    @Test
+    public void statsAreOnlyWrittenOutsideFormatOne() {
+        session.ball.record(1546300800000L, 1.5f, 2.5f, 2.9);
+        recordSensor(session.accelerometer, 1546300800000L, "");
+
+        GameDataWriter writer = new GameDataWriter();
+        String legacy = writer.write(session);
+        String withStats = writer.write(session, true, true);
+
+        assertFalse(legacy.contains("\"" + GameDataWriter.KEY_FEATURES + "\""));
+        assertFalse(legacy.contains("\"" + GameDataWriter.KEY_DELIVERY + "\""));
+        assertTrue(withStats.contains("\"" + GameDataWriter.KEY_FEATURES + "\""));
+        assertTrue(withStats.contains("\"" + GameDataWriter.KEY_DELIVERY + "\""));
+    }
+
+    private void recordSensor(SampleRecorder recorder, long timestamp, String label) {
+        recorder.record(timestamp, DEVICE_ID, random.nextGaussian() * 9.81, random.nextGaussian(),
+                random.nextGaussian() * 1e-7, random.nextInt(4), label);
+    }
+
+    // the document as GameFragment.updateBall() and stopGame() assembled it
+    private static String legacyDocument(GameSession session) {
+        String gameData = "{\"gamedata\":[{\"ball_radius\":" + session.ballRadius + ",";
+        gameData += "\"sensitivity\":" + session.sensitivity + ",";
+        gameData += "\"device_x_res\":" + session.deviceXres + ",";
+        gameData += "\"device_y_res\":" + session.deviceYres + "," + "\"samples\":[";
+        for (int i = 0; i < session.ball.size(); i++) {
+            gameData += "{\"timestamp\":" + session.ball.getTimestamp(i) + ",";
+            gameData += "\"ball_x\":" + session.ball.getBallX(i) + ",";
+            gameData += "\"ball_y\":" + session.ball.getBallY(i) + ",";
+            gameData += "\"distance\":" + session.ball.getDistance(i) + "},";
+        }
+
+        String gamedata = gameData.substring(0, gameData.length() - 1) + "],\"score\":" + session.score + "}],";
+        return gamedata
+                + legacySamples("accelerometer", session.accelerometer) + ","
+                + legacySamples("linearaccelerometer", session.linearAccelerometer) + ","
+                + legacySamples("gyroscope", session.gyroscope) + ","
+                + legacySamples("rotation", session.rotation) + "}";
+    }
+
+    private static String legacySamples(String name, SampleRecorder recorder) {
+        if (recorder.size() == 0) {
+            return "\"" + name + "\":[\"not_activated\"]";
+        }
+
+        StringBuilder samples = new StringBuilder();
+        for (int i = 0; i < recorder.size(); i++) {
+            Sample sample = new Sample(recorder.getTimestamp(i), recorder.getDeviceId(i), recorder.getValue0(i),
+                    recorder.getValue1(i), recorder.getValue2(i), recorder.getAccuracy(i), recorder.getLabel(i));
+            samples.append(new Gson().toJson(sample)).append(",");
+        }
+        return "\"" + name + "\":[" + samples.substring(0, samples.length() - 1) + "]";
+    }
+}
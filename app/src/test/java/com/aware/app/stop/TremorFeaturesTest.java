@@ -0,0 +1,65 @@
+package com.aware.app.stop;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/*
+ * TremorFeatures on pure sine waves on top of gravity, sampled at 50 Hz: a tremor
+ * frequency has to dominate its windows and put nearly all power in the 3-7 Hz band,
+ * a voluntary movement or a frequency above the band next to none.
+ */
+
+public class TremorFeaturesTest {
+
+    private static final double GRAVITY = 9.81;
+    private static final int SAMPLE_RATE_HZ = 50;
+
+    // two full windows and the overlapping one between them
+    private static final int SAMPLES = TremorFeatures.WINDOW_SAMPLES * 2;
+
+    @Test
+    public void sineInsideBandIsTremor() {
+        TremorFeatures features = sine(5.0);
+
+        assertEquals(3, features.size());
+        for (int i = 0; i < features.size(); i++) {
+            assertEquals(5.0, features.getDominantFrequency(i), 0);
+            assertTrue("band ratio " + features.getBandRatio(i), features.getBandRatio(i) > 0.99);
+            assertEquals(SAMPLE_RATE_HZ, features.getSampleRate(i), 0);
+        }
+    }
+
+    @Test
+    public void sineBelowBandIsNotTremor() {
+        TremorFeatures features = sine(2.0);
+
+        assertEquals(3, features.size());
+        for (int i = 0; i < features.size(); i++) {
+            assertEquals(2.0, features.getDominantFrequency(i), 0);
+            assertTrue("band ratio " + features.getBandRatio(i), features.getBandRatio(i) < 0.01);
+        }
+    }
+
+    @Test
+    public void sineAboveBandIsNotTremor() {
+        TremorFeatures features = sine(9.0);
+
+        assertEquals(3, features.size());
+        for (int i = 0; i < features.size(); i++) {
+            assertEquals(9.0, features.getDominantFrequency(i), 0);
+            assertTrue("band ratio " + features.getBandRatio(i), features.getBandRatio(i) < 0.01);
+        }
+    }
+
+    private static TremorFeatures sine(double frequency) {
+        TremorFeatures features = new TremorFeatures();
+        for (int i = 0; i < SAMPLES; i++) {
+            long timestamp = 1546300800000L + i * 1000L / SAMPLE_RATE_HZ;
+            double value = Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE_HZ);
+            features.add(timestamp, GRAVITY + value, 0, 0);
+        }
+        return features;
+    }
+}
@@ -0,0 +1,98 @@
+package com.aware.app.stop.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Writing a batch of notification_data rows to an on-disk SQLite database, the way
+ * Provider.insert does it per row (own transaction, statement compiled per row) and
+ * the way Provider.bulkInsert does it (one transaction, one compiled statement).
+ * Provider itself needs Android, so the same SQL is run through sqlite-jdbc.
+ * One operation = one batch.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class BatchInsertBenchmark {
+
+    private static final String CREATE = "CREATE TABLE notification_data (_id integer primary key autoincrement,"
+            + "timestamp real default 0,device_id text default '',event text default '')";
+
+    private static final String INSERT = "INSERT INTO notification_data (device_id,event,timestamp) VALUES (?,?,?)";
+
+    @Param({"10", "100", "1000"})
+    public int rows;
+
+    private File file;
+    private Connection connection;
+
+    @Setup(Level.Iteration)
+    public void setup() throws IOException, SQLException {
+        file = File.createTempFile("stop-batch", ".db");
+        connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CREATE);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws SQLException {
+        connection.close();
+        file.delete();
+    }
+
+    // Provider.insert per row
+    @Benchmark
+    public int insertPerRow() throws SQLException {
+        int count = 0;
+        for (int i = 0; i < rows; i++) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+                bind(statement, i);
+                count += statement.executeUpdate();
+            }
+            connection.commit();
+        }
+        return count;
+    }
+
+    // Provider.bulkInsert
+    @Benchmark
+    public int bulkInsert() throws SQLException {
+        int count = 0;
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+            for (int i = 0; i < rows; i++) {
+                statement.clearParameters();
+                bind(statement, i);
+                count += statement.executeUpdate();
+            }
+        }
+        connection.commit();
+        return count;
+    }
+
+    private static void bind(PreparedStatement statement, int row) throws SQLException {
+        statement.setString(1, SyntheticSession.DEVICE_ID);
+        statement.setString(2, "morning_shown");
+        statement.setDouble(3, 1546300800000.0 + row);
+    }
+}
@@ -0,0 +1,104 @@
+package com.aware.app.stop.benchmark;
+
+import com.aware.app.stop.GameSession;
+import com.aware.app.stop.Sample;
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Cost of recording one sensor event of the game, one operation = one sample.
+ * With the gc profiler, gc.alloc.rate.norm is the number of bytes allocated per sample.
+ * A game is replayed sample by sample and restarted when the session is over.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class CaptureBenchmark {
+
+    private int index;
+
+    // original path: Sample -> new Gson().toJson -> StringBuffer.append
+    private StringBuffer legacySamples;
+    private String legacyGameData;
+
+    // preallocated recorders
+    private GameSession session;
+
+    @Setup(Level.Trial)
+    public void setup(SyntheticSession data) {
+        legacySamples = new StringBuffer();
+        legacyGameData = "";
+        session = new GameSession();
+        session.ensureCapacity(data.durationSeconds * 1000);
+        index = 0;
+    }
+
+    private int next(SyntheticSession data) {
+        if (index == data.samples) {
+            // game over, next game starts with empty buffers
+            index = 0;
+            legacySamples.setLength(0);
+            legacyGameData = "";
+            session.clear();
+        }
+        return index++;
+    }
+
+    @Benchmark
+    public StringBuffer legacySensorSample(SyntheticSession data) {
+        int i = next(data);
+        Sample sample = new Sample(data.timestamps[i], SyntheticSession.DEVICE_ID,
+                data.values[0][0][i], data.values[0][1][i], data.values[0][2][i],
+                data.accuracies[i], SyntheticSession.LABEL);
+        return legacySamples.append(new Gson().toJson(sample)).append(",");
+    }
+
+    @Benchmark
+    public GameSession recorderSensorSample(SyntheticSession data) {
+        int i = next(data);
+        session.accelerometer.record(data.timestamps[i], SyntheticSession.DEVICE_ID,
+                data.values[0][0][i], data.values[0][1][i], data.values[0][2][i],
+                data.accuracies[i], SyntheticSession.LABEL);
+        return session;
+    }
+
+    @Benchmark
+    public GameSession recorderSensorSampleWithTremor(SyntheticSession data) {
+        int i = next(data);
+        session.accelerometer.record(data.timestamps[i], SyntheticSession.DEVICE_ID,
+                data.values[0][0][i], data.values[0][1][i], data.values[0][2][i],
+                data.accuracies[i], SyntheticSession.LABEL);
+        session.accelerometerTremor.add(data.timestamps[i],
+                data.values[0][0][i], data.values[0][1][i], data.values[0][2][i]);
+        return session;
+    }
+
+    // original updateBall(): four String concatenations per event, quadratic over the game
+    @Benchmark
+    public String legacyBallSample(SyntheticSession data) {
+        int i = next(data);
+        legacyGameData += "{\"timestamp\":" + data.timestamps[i] + ",";
+        legacyGameData += "\"ball_x\":" + data.ballX[i] + ",";
+        legacyGameData += "\"ball_y\":" + data.ballY[i] + ",";
+        legacyGameData += "\"distance\":" + data.distances[i] + "},";
+        return legacyGameData;
+    }
+
+    @Benchmark
+    public GameSession recorderBallSample(SyntheticSession data) {
+        int i = next(data);
+        session.ball.record(data.timestamps[i], data.ballX[i], data.ballY[i], data.distances[i]);
+        return session;
+    }
+}
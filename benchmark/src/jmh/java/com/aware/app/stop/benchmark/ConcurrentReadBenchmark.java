@@ -0,0 +1,138 @@
+package com.aware.app.stop.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Latency of a medication journal page read while another connection keeps inserting
+ * multi-megabyte ball_game rows, one transaction per game, as GamePersister does.
+ * With the default rollback journal the reader waits for every commit; with write-ahead
+ * logging (Provider.configureDatabase) it reads the last committed snapshot instead.
+ * Provider itself needs Android, so the same SQL is run through sqlite-jdbc.
+ * Sample mode reports the latency percentiles, p0.99 and p1.0 show the blocking.
+ */
+
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class ConcurrentReadBenchmark {
+
+    private static final String PAGE = "SELECT _id, double_medication FROM medication"
+            + " ORDER BY double_medication DESC, _id DESC LIMIT 50";
+
+    @Param({"delete", "wal"})
+    public String journalMode;
+
+    // size of one stored game payload
+    @Param({"4194304"})
+    public int gameBytes;
+
+    private File file;
+    private Connection reader;
+    private Thread writer;
+    private volatile boolean writing;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SQLException {
+        file = File.createTempFile("stop-concurrent", ".db");
+
+        try (Connection connection = open()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE medication (_id integer primary key autoincrement,"
+                        + "timestamp real default 0,double_medication real default 0,device_id text default '')");
+                statement.execute("CREATE INDEX idx_medication_double_medication ON medication (double_medication)");
+                statement.execute("CREATE TABLE ball_game (_id integer primary key autoincrement,"
+                        + "timestamp real default 0,device_id text default '',game_data longtext default '')");
+            }
+
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO medication (timestamp,double_medication,device_id) VALUES (?,?,?)")) {
+                for (int i = 0; i < 1000; i++) {
+                    insert.setDouble(1, 1546300800000.0 + i * 3600000.0);
+                    insert.setDouble(2, 1546300800000.0 + i * 3600000.0);
+                    insert.setString(3, SyntheticSession.DEVICE_ID);
+                    insert.executeUpdate();
+                }
+            }
+            connection.commit();
+        }
+
+        reader = open();
+
+        final char[] payload = new char[gameBytes];
+        Arrays.fill(payload, '0');
+        final String gameData = new String(payload);
+
+        writing = true;
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try (Connection connection = open();
+                     PreparedStatement insert = connection.prepareStatement(
+                             "INSERT INTO ball_game (timestamp,device_id,game_data) VALUES (?,?,?)")) {
+                    connection.setAutoCommit(false);
+                    while (writing) {
+                        insert.setDouble(1, System.currentTimeMillis());
+                        insert.setString(2, SyntheticSession.DEVICE_ID);
+                        insert.setString(3, gameData);
+                        insert.executeUpdate();
+                        connection.commit();
+                    }
+                } catch (SQLException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }, "game-writer");
+        writer.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException, InterruptedException {
+        writing = false;
+        writer.join();
+        reader.close();
+        file.delete();
+        new File(file.getPath() + "-wal").delete();
+        new File(file.getPath() + "-shm").delete();
+    }
+
+    @Benchmark
+    public int readJournalPage() throws SQLException {
+        int rows = 0;
+        try (Statement statement = reader.createStatement();
+             ResultSet result = statement.executeQuery(PAGE)) {
+            while (result.next()) rows++;
+        }
+        return rows;
+    }
+
+    // connections wait for locks instead of failing, like SQLiteDatabase does
+    private Connection open() throws SQLException {
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA busy_timeout=30000");
+            statement.execute("PRAGMA journal_mode=" + journalMode);
+        }
+        return connection;
+    }
+}
@@ -0,0 +1,134 @@
+package com.aware.app.stop.benchmark;
+
+import com.aware.app.stop.GameDataEncoder;
+import com.aware.app.stop.GameDataWriter;
+import com.aware.app.stop.GameSession;
+import com.aware.app.stop.Sample;
+import com.aware.app.stop.SampleRecorder;
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Cost of a whole game: replaying all four streams and the ball track, then building the
+ * payload stored in Provider.Game_Data.DATA. One operation = one game.
+ * payloadBytes reports the size of the stored payload; JSON is ASCII, so its length is its size.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class SessionBenchmark {
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Payload {
+        public long payloadBytes;
+    }
+
+    private static final String[] STREAM_KEYS = {"accelerometer", "linearaccelerometer", "gyroscope", "rotation"};
+
+    private GameSession session;
+    private GameDataWriter writer;
+    private GameDataEncoder encoder;
+
+    @Setup(Level.Trial)
+    public void setup(SyntheticSession data) {
+        session = new GameSession();
+        session.ensureCapacity(data.durationSeconds * 1000);
+        writer = new GameDataWriter();
+        encoder = new GameDataEncoder();
+    }
+
+    // original capture path and stopGame() assembly
+    @Benchmark
+    public String legacyGame(SyntheticSession data, Payload payload) {
+        String gameData = "{\"gamedata\":[{\"ball_radius\":" + 150 + ",";
+        gameData += "\"sensitivity\":" + 3.0f + ",";
+        gameData += "\"device_x_res\":" + 1080 + ",";
+        gameData += "\"device_y_res\":" + 1920 + "," + "\"samples\":[";
+        StringBuffer[] streams = new StringBuffer[SyntheticSession.STREAMS];
+        for (int stream = 0; stream < SyntheticSession.STREAMS; stream++) {
+            streams[stream] = new StringBuffer();
+        }
+
+        for (int i = 0; i < data.samples; i++) {
+            gameData += "{\"timestamp\":" + data.timestamps[i] + ",";
+            gameData += "\"ball_x\":" + data.ballX[i] + ",";
+            gameData += "\"ball_y\":" + data.ballY[i] + ",";
+            gameData += "\"distance\":" + data.distances[i] + "},";
+
+            for (int stream = 0; stream < SyntheticSession.STREAMS; stream++) {
+                Sample sample = new Sample(data.timestamps[i], SyntheticSession.DEVICE_ID,
+                        data.values[stream][0][i], data.values[stream][1][i], data.values[stream][2][i],
+                        data.accuracies[i], SyntheticSession.LABEL);
+                streams[stream].append(new Gson().toJson(sample)).append(",");
+            }
+        }
+
+        String result = gameData.substring(0, gameData.length() - 1) + "],\"score\":" + 87.5 + "}],";
+        for (int stream = 0; stream < SyntheticSession.STREAMS; stream++) {
+            result += "\"" + STREAM_KEYS[stream] + "\":[" + streams[stream].substring(0, streams[stream].length() - 1) + "]";
+            result += stream == SyntheticSession.STREAMS - 1 ? "}" : ",";
+        }
+
+        payload.payloadBytes = result.length();
+        return result;
+    }
+
+    @Benchmark
+    public String recorderJsonGame(SyntheticSession data, Payload payload) {
+        record(data);
+        String result = writer.write(session);
+        payload.payloadBytes = result.length();
+        return result;
+    }
+
+    @Benchmark
+    public byte[] recorderBinaryGame(SyntheticSession data, Payload payload) {
+        record(data);
+        byte[] result = encoder.encode(session);
+        // stored as Base64 text
+        payload.payloadBytes = (result.length + 2) / 3 * 4;
+        return result;
+    }
+
+    @Benchmark
+    public String recorderFeaturesGame(SyntheticSession data, Payload payload) {
+        record(data);
+        String result = writer.write(session, false, true);
+        payload.payloadBytes = result.length();
+        return result;
+    }
+
+    private void record(SyntheticSession data) {
+        session.clear();
+        session.ballRadius = 150;
+        session.sensitivity = 3.0f;
+        session.deviceXres = 1080;
+        session.deviceYres = 1920;
+
+        SampleRecorder[] streams = {session.accelerometer, session.linearAccelerometer, session.gyroscope, session.rotation};
+        for (int i = 0; i < data.samples; i++) {
+            session.ball.record(data.timestamps[i], data.ballX[i], data.ballY[i], data.distances[i]);
+            for (int stream = 0; stream < SyntheticSession.STREAMS; stream++) {
+                streams[stream].record(data.timestamps[i], SyntheticSession.DEVICE_ID,
+                        data.values[stream][0][i], data.values[stream][1][i], data.values[stream][2][i],
+                        data.accuracies[i], SyntheticSession.LABEL);
+            }
+            session.accelerometerTremor.add(data.timestamps[i], data.values[0][0][i], data.values[0][1][i], data.values[0][2][i]);
+            session.gyroscopeTremor.add(data.timestamps[i], data.values[2][0][i], data.values[2][1][i], data.values[2][2][i]);
+        }
+        session.score = 87.5;
+    }
+}
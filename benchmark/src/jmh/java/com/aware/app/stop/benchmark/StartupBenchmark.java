@@ -0,0 +1,157 @@
+package com.aware.app.stop.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * The database work MainActivity.onCreate did on the main thread before the first frame
+ * and StartupInitializer now does after it: the consent cross-check (aware_studies and
+ * consent) and looking up the five notification schedules. The schedules already exist,
+ * as on every launch after the first one. Each table lives in its own database file like
+ * in the app; firstAccess opens them within the operation, as the first launch of a
+ * process has to. ContentResolver and AWARE itself need Android, so the same SQL is run
+ * through sqlite-jdbc. One operation = the reads of one launch.
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class StartupBenchmark {
+
+    private static final String[] SCHEDULES = {"game_morning", "game_noon", "game_afternoon", "game_evening", "survey"};
+
+    private static final String JOINED = "SELECT double_join FROM aware_studies";
+    private static final String CONSENT = "SELECT timestamp FROM consent";
+    private static final String SCHEDULE = "SELECT * FROM scheduler WHERE schedule_id LIKE ? AND package_name LIKE ?";
+
+    @Param({"true", "false"})
+    public boolean firstAccess;
+
+    private File awareFile;
+    private File schedulerFile;
+    private File stopFile;
+    private Connection aware;
+    private Connection scheduler;
+    private Connection stop;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException, SQLException {
+        awareFile = File.createTempFile("stop-startup-aware", ".db");
+        schedulerFile = File.createTempFile("stop-startup-scheduler", ".db");
+        stopFile = File.createTempFile("stop-startup-stop", ".db");
+
+        try (Connection connection = open(awareFile); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE aware_studies (_id integer primary key autoincrement,timestamp real default 0,"
+                    + "device_id text default '',study_key text default '',study_api text default '',"
+                    + "study_url text default '',study_pi text default '',study_config text default '',"
+                    + "study_title text default '',study_description text default '',double_join real default 0,"
+                    + "double_exit real default 0,study_compliance text default '')");
+            statement.execute("INSERT INTO aware_studies (timestamp,device_id,double_join) VALUES "
+                    + "(1546300800000,'" + SyntheticSession.DEVICE_ID + "',1546300800000)");
+        }
+
+        try (Connection connection = open(stopFile); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE consent (_id integer primary key autoincrement,timestamp real default 0,"
+                    + "device_id text default '',user_data text default '')");
+            statement.execute("INSERT INTO consent (timestamp,device_id,user_data) VALUES "
+                    + "(1546300800000,'" + SyntheticSession.DEVICE_ID + "','{}')");
+        }
+
+        try (Connection connection = open(schedulerFile)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE scheduler (_id integer primary key autoincrement,timestamp real default 0,"
+                        + "device_id text default '',schedule_id text default '',schedule text default '',"
+                        + "package_name text default '',last_triggered real default 0)");
+            }
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO scheduler (timestamp,device_id,schedule_id,schedule,package_name) VALUES (?,?,?,?,?)")) {
+                for (String schedule : SCHEDULES) {
+                    insert.setDouble(1, 1546300800000.0);
+                    insert.setString(2, SyntheticSession.DEVICE_ID);
+                    insert.setString(3, schedule);
+                    insert.setString(4, "{\"schedule_id\":\"" + schedule + "\",\"trigger\":{\"hour\":[8,11],"
+                            + "\"random\":{\"random_times\":1,\"random_interval\":0}},\"action\":{\"type\":\"broadcast\","
+                            + "\"class\":\"ACTION_STOP_FINGERPRINT\",\"extras\":[{\"extra_key\":"
+                            + "\"notification_trigger_event\",\"extra_value\":\"" + schedule + "\"}]}}");
+                    insert.setString(5, "com.aware.app.stop");
+                    insert.executeUpdate();
+                }
+            }
+        }
+
+        if (!firstAccess) openAll();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        if (!firstAccess) closeAll();
+        awareFile.delete();
+        schedulerFile.delete();
+        stopFile.delete();
+    }
+
+    // MainActivity.onCreate before the change, the main thread does none of this after it
+    @Benchmark
+    public int launchReads() throws SQLException {
+        if (firstAccess) openAll();
+        try {
+            int rows = 0;
+            rows += count(aware, JOINED);
+            rows += count(stop, CONSENT);
+            try (PreparedStatement statement = scheduler.prepareStatement(SCHEDULE)) {
+                for (String schedule : SCHEDULES) {
+                    statement.setString(1, schedule);
+                    statement.setString(2, "com.aware.app.stop");
+                    try (ResultSet result = statement.executeQuery()) {
+                        while (result.next()) rows++;
+                    }
+                }
+            }
+            return rows;
+        } finally {
+            if (firstAccess) closeAll();
+        }
+    }
+
+    private static int count(Connection connection, String query) throws SQLException {
+        int rows = 0;
+        try (Statement statement = connection.createStatement(); ResultSet result = statement.executeQuery(query)) {
+            while (result.next()) rows++;
+        }
+        return rows;
+    }
+
+    private void openAll() throws SQLException {
+        aware = open(awareFile);
+        scheduler = open(schedulerFile);
+        stop = open(stopFile);
+    }
+
+    private void closeAll() throws SQLException {
+        aware.close();
+        scheduler.close();
+        stop.close();
+    }
+
+    private static Connection open(File file) throws SQLException {
+        return DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+    }
+}
@@ -0,0 +1,71 @@
+package com.aware.app.stop.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/*
+ * Replayable four-stream sensor session, generated once per benchmark trial
+ */
+
+@State(Scope.Benchmark)
+public class SyntheticSession {
+
+    public static final String DEVICE_ID = "5f7e1a2c-9b3d-4e8f-a1c6-0d2b7e4f9a13";
+    public static final String LABEL = "";
+    public static final int STREAMS = 4;
+
+    @Param({"50", "100", "200"})
+    public int rateHz;
+
+    @Param({"10", "30", "60"})
+    public int durationSeconds;
+
+    // samples per stream
+    public int samples;
+    public long[] timestamps;
+
+    // [stream][axis][sample], float precision like the values AWARE delivers
+    public double[][][] values;
+    public int[] accuracies;
+
+    // ball track
+    public float[] ballX;
+    public float[] ballY;
+    public double[] distances;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        samples = rateHz * durationSeconds;
+        timestamps = new long[samples];
+        values = new double[STREAMS][3][samples];
+        accuracies = new int[samples];
+        ballX = new float[samples];
+        ballY = new float[samples];
+        distances = new double[samples];
+
+        Random random = new Random(42);
+        long start = 1571400000000L;
+        double periodMs = 1000.0 / rateHz;
+        for (int i = 0; i < samples; i++) {
+            timestamps[i] = start + Math.round(i * periodMs) + random.nextInt(2);
+            accuracies[i] = 3;
+
+            // hand tremor around 5 Hz on top of gravity and noise
+            double tremor = 0.3 * Math.sin(2 * Math.PI * 5.0 * i / rateHz);
+            for (int stream = 0; stream < STREAMS; stream++) {
+                values[stream][0][i] = (float) (tremor + 0.05 * random.nextGaussian());
+                values[stream][1][i] = (float) (-tremor + 0.05 * random.nextGaussian());
+                values[stream][2][i] = (float) ((stream == 0 ? 9.81 : 0) + 0.05 * random.nextGaussian());
+            }
+
+            ballX[i] = (float) (random.nextGaussian() * 40);
+            ballY[i] = (float) (random.nextGaussian() * 40);
+            distances[i] = Math.sqrt(ballX[i] * ballX[i] + ballY[i] * ballY[i]);
+        }
+    }
+}